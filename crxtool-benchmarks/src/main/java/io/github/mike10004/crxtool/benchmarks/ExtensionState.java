@@ -0,0 +1,49 @@
+package io.github.mike10004.crxtool.benchmarks;
+
+import io.github.mike10004.crxtool.InputSource;
+import io.github.mike10004.crxtool.KeyPairs;
+import io.github.mike10004.crxtool.Zipping;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+
+/**
+ * Benchmark state that holds a synthetic extension directory, its zip archive, and a key pair.
+ */
+@State(Scope.Benchmark)
+public class ExtensionState {
+
+    @Param({"10KB", "1MB", "20MB", "200MB"})
+    public String extensionSize;
+
+    public Path workDir;
+    public Path extensionDir;
+    public Path zipFile;
+    public InputSource zip;
+    public KeyPair keyPair;
+
+    @Setup
+    public void setUp() throws IOException, GeneralSecurityException {
+        workDir = Files.createTempDirectory("crxtool-benchmarks");
+        extensionDir = SyntheticExtensions.createExtensionDir(workDir.resolve("extension"), SyntheticExtensions.parseSize(extensionSize), extensionSize.hashCode());
+        zipFile = workDir.resolve("extension.zip");
+        zip = Zipping.zipDirectory(extensionDir, null, zipFile);
+        keyPair = KeyPairs.generateRsaKeyPair(new SecureRandom());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (workDir != null) {
+            SyntheticExtensions.deleteRecursively(workDir);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.mike10004.crxtool.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import io.github.mike10004.crxtool.CrxPacker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for packing a CRX3 file. Output is discarded so that only
+ * zipping, signing, and header construction are measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PackBenchmark {
+
+    @Benchmark
+    public void packExtension_archive(ExtensionState state) throws IOException, NoSuchAlgorithmException, SignatureException, InvalidKeyException {
+        CrxPacker.getDefault().packExtension(state.zip, state.keyPair, ByteStreams.nullOutputStream());
+    }
+
+    @Benchmark
+    public void packExtension_directory(ExtensionState state) throws IOException, NoSuchAlgorithmException, SignatureException, InvalidKeyException {
+        CrxPacker.getDefault().packExtension(state.extensionDir, state.keyPair, ByteStreams.nullOutputStream());
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.mike10004.crxtool.benchmarks;
+
+import io.github.mike10004.crxtool.CrxInventory;
+import io.github.mike10004.crxtool.CrxParser;
+import io.github.mike10004.crxtool.CrxVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing the header of a CRX file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CrxState extends ExtensionState {
+
+        @Param({"CRX2", "CRX3"})
+        public CrxVersion crxVersion;
+
+        public Path crxFile;
+
+        /**
+         * Writes the CRX file. JMH runs this after the superclass setup method,
+         * which creates the archive and key pair.
+         */
+        @Setup
+        public void writeCrx() throws IOException, GeneralSecurityException {
+            crxFile = workDir.resolve("extension.crx");
+            SyntheticExtensions.writeCrx(zip, crxVersion, keyPair, crxFile);
+        }
+    }
+
+    @Benchmark
+    public CrxInventory parseInventory_stream(CrxState state) throws IOException {
+        try (InputStream in = Files.newInputStream(state.crxFile)) {
+            return CrxParser.getDefault().parseInventory(in);
+        }
+    }
+
+    @Benchmark
+    public CrxInventory parseInventory_path(CrxState state) throws IOException {
+        return CrxParser.getDefault().parseInventory(state.crxFile);
+    }
+}
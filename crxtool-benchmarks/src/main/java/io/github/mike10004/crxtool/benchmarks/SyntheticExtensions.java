@@ -0,0 +1,138 @@
+package io.github.mike10004.crxtool.benchmarks;
+
+import com.google.common.io.LittleEndianDataOutputStream;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.mike10004.crxtool.CrxPacker;
+import io.github.mike10004.crxtool.CrxVersion;
+import io.github.mike10004.crxtool.InputSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Static utility methods that create synthetic extensions for benchmarks.
+ */
+final class SyntheticExtensions {
+
+    private static final int MAX_FILE_SIZE = 1024 * 1024;
+
+    private SyntheticExtensions() {}
+
+    /**
+     * Parses a size such as {@code 10KB} or {@code 200MB}.
+     * @param size the size string
+     * @return the number of bytes
+     */
+    public static long parseSize(String size) {
+        String s = size.trim().toUpperCase(Locale.ROOT);
+        if (s.endsWith("KB")) {
+            return Long.parseLong(s.substring(0, s.length() - 2)) * 1024;
+        }
+        if (s.endsWith("MB")) {
+            return Long.parseLong(s.substring(0, s.length() - 2)) * 1024 * 1024;
+        }
+        return Long.parseLong(s);
+    }
+
+    /**
+     * Creates an extension directory whose files total approximately the given size.
+     * Half of the files contain script text, which compresses well, and half contain
+     * random bytes, which do not, much like a mix of scripts and images.
+     * @param directory the directory to populate
+     * @param totalSize approximate total size of the files
+     * @param seed random seed
+     * @return the directory
+     * @throws IOException on I/O error
+     */
+    public static Path createExtensionDir(Path directory, long totalSize, long seed) throws IOException {
+        Random random = new Random(seed);
+        Files.createDirectories(directory);
+        byte[] manifest = ("{\"manifest_version\": 2, \"name\": \"synthetic\", \"version\": \"1.0\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        Files.write(directory.resolve("manifest.json"), manifest);
+        long remaining = totalSize - manifest.length;
+        for (int i = 0; remaining > 0; i++) {
+            int size = (int) Math.min(remaining, 1 + random.nextInt(MAX_FILE_SIZE));
+            Path file = directory.resolve(String.format("d%d/f%d.%s", i % 8, i, i % 2 == 0 ? "js" : "png"));
+            Files.createDirectories(file.getParent());
+            Files.write(file, i % 2 == 0 ? createScript(random, size) : createNoise(random, size));
+            remaining -= size;
+        }
+        return directory;
+    }
+
+    private static byte[] createNoise(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] createScript(Random random, int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        while (sb.length() < size) {
+            sb.append("console.log('value ").append(random.nextInt(1000)).append("');\n");
+        }
+        sb.setLength(size);
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes a CRX file containing a zip archive.
+     * @param zip the zip archive
+     * @param version CRX format version
+     * @param keyPair key pair
+     * @param crxFile destination file
+     * @throws IOException on I/O error
+     * @throws GeneralSecurityException on signing error
+     */
+    public static void writeCrx(InputSource zip, CrxVersion version, KeyPair keyPair, Path crxFile) throws IOException, GeneralSecurityException {
+        try (OutputStream out = Files.newOutputStream(crxFile)) {
+            if (version == CrxVersion.CRX2) {
+                writeCrx2(zip, keyPair, out);
+            } else {
+                CrxPacker.getDefault().packExtension(zip, keyPair, out);
+            }
+        }
+    }
+
+    /*
+     * Packing in CRX2 format is no longer supported by the library, so the
+     * header is written here.
+     */
+    private static void writeCrx2(InputSource zip, KeyPair keyPair, OutputStream out) throws IOException, GeneralSecurityException {
+        Signature signature = Signature.getInstance("SHA1withRSA");
+        signature.initSign(keyPair.getPrivate());
+        byte[] buffer = new byte[8192];
+        try (InputStream in = zip.openStream()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                signature.update(buffer, 0, n);
+            }
+        }
+        byte[] publicKey = keyPair.getPublic().getEncoded();
+        byte[] signatureBytes = signature.sign();
+        LittleEndianDataOutputStream leOutput = new LittleEndianDataOutputStream(out);
+        leOutput.write("Cr24".getBytes(StandardCharsets.US_ASCII));
+        leOutput.writeInt(CrxVersion.CRX2.identifier());
+        leOutput.writeInt(publicKey.length);
+        leOutput.writeInt(signatureBytes.length);
+        leOutput.write(publicKey);
+        leOutput.write(signatureBytes);
+        leOutput.flush();
+        zip.copyTo(out);
+    }
+
+    public static void deleteRecursively(Path path) throws IOException {
+        MoreFiles.deleteRecursively(path, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+}
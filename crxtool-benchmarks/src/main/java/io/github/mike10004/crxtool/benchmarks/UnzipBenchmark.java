@@ -0,0 +1,38 @@
+package io.github.mike10004.crxtool.benchmarks;
+
+import io.github.mike10004.crxtool.testing.Unzippage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for unzipping an extension archive into memory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UnzipBenchmark {
+
+    @Benchmark
+    public Unzippage unzip_stream(ExtensionState state) throws IOException {
+        try (InputStream in = Files.newInputStream(state.zipFile)) {
+            return Unzippage.unzip(in);
+        }
+    }
+
+    @Benchmark
+    public Unzippage unzip_file(ExtensionState state) throws IOException {
+        return Unzippage.unzip(state.zipFile.toFile());
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.mike10004.crxtool.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import io.github.mike10004.crxtool.Zipping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for zipping an extension directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ZipBenchmark {
+
+    @Benchmark
+    public void zipDirectory(ExtensionState state) throws IOException {
+        Zipping.zipDirectory(state.extensionDir, null, ByteStreams.nullOutputStream());
+    }
+
+    @Benchmark
+    public void zipDirectory_parallel(ExtensionState state) throws IOException {
+        Zipping.zipDirectory(state.extensionDir, null, ByteStreams.nullOutputStream(), ForkJoinPool.commonPool());
+    }
+}
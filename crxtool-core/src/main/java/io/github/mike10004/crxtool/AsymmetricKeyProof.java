@@ -1,7 +1,10 @@
 package io.github.mike10004.crxtool;
 
+import com.google.common.io.BaseEncoding;
 import com.google.common.primitives.Ints;
 
+import java.nio.ByteBuffer;
+
 /**
  * Interface that represents asymmetric key proof.
  */
@@ -19,6 +22,22 @@ public interface AsymmetricKeyProof {
      */
     String getSignatureBase64();
 
+    /**
+     * Gets the public key bytes.
+     * @return a read-only buffer containing the public key
+     */
+    default ByteBuffer getPublicKeyBytes() {
+        return ByteBuffer.wrap(BaseEncoding.base64().decode(getPublicKeyBase64())).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the signature bytes.
+     * @return a read-only buffer containing the signature
+     */
+    default ByteBuffer getSignatureBytes() {
+        return ByteBuffer.wrap(BaseEncoding.base64().decode(getSignatureBase64())).asReadOnlyBuffer();
+    }
+
     /**
      * Gets the length of the public key byte array.
      * @return public key length
@@ -0,0 +1,120 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Packs an extension in stages that run on caller-supplied executors.
+ * The zip stage compresses the extension directory into a temporary file,
+ * and the sign stage reads that file once to compute the signature and
+ * writes the CRX file. The temporary file is deleted when packing completes,
+ * whether or not it succeeds. If writing the output file fails, it is deleted.
+ */
+class AsyncPacking {
+
+    private final CrxPacker packer;
+    private final Executor zipExecutor;
+    private final Executor signExecutor;
+
+    public AsyncPacking(CrxPacker packer, Executor zipExecutor, Executor signExecutor) {
+        this.packer = requireNonNull(packer);
+        this.zipExecutor = requireNonNull(zipExecutor);
+        this.signExecutor = requireNonNull(signExecutor);
+    }
+
+    public CompletableFuture<CrxPackResult> pack(Path extensionDir, @Nullable ZipConfig zipConfig, KeyPair keyPair, Path outputFile) {
+        requireNonNull(extensionDir, "extensionDir");
+        requireNonNull(keyPair, "keyPair");
+        requireNonNull(outputFile, "outputFile");
+        CompletableFuture<Path> zipped = CompletableFuture.supplyAsync(() -> zip(extensionDir, zipConfig), zipExecutor);
+        CompletableFuture<CrxPackResult> packed = zipped.thenApplyAsync(zipFile -> sign(zipFile, keyPair, outputFile), signExecutor);
+        return packed.whenComplete((result, error) -> zipped.thenAccept(AsyncPacking::deleteQuietly));
+    }
+
+    private static Path zip(Path extensionDir, @Nullable ZipConfig zipConfig) {
+        try {
+            Path zipFile = java.nio.file.Files.createTempFile("crxtool-archive", ".zip");
+            try {
+                Zipping.zipDirectory(extensionDir, zipConfig, zipFile);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(zipFile);
+                throw e;
+            }
+            return zipFile;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private CrxPackResult sign(Path zipFile, KeyPair keyPair, Path outputFile) {
+        try {
+            try (FileChannel output = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                packer.packExtension(InputSource.fromFile(zipFile), keyPair, output);
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                deleteQuietly(outputFile);
+                throw e;
+            }
+            String crxId = CrxIds.fromPublicKey(keyPair.getPublic().getEncoded());
+            return new PackResult(outputFile, crxId, java.nio.file.Files.size(outputFile), packer.getCrxVersion());
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            java.nio.file.Files.deleteIfExists(file);
+        } catch (IOException ignore) {
+        }
+    }
+
+    private static class PackResult implements CrxPackResult {
+
+        private final Path outputFile;
+        private final String crxId;
+        private final long size;
+        private final CrxVersion crxVersion;
+
+        public PackResult(Path outputFile, String crxId, long size, CrxVersion crxVersion) {
+            this.outputFile = outputFile;
+            this.crxId = crxId;
+            this.size = size;
+            this.crxVersion = crxVersion;
+        }
+
+        @Override
+        public Path outputFile() {
+            return outputFile;
+        }
+
+        @Override
+        public String crxId() {
+            return crxId;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public CrxVersion crxVersion() {
+            return crxVersion;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CrxPackResult{outputFile=%s,crxId=%s,size=%d}", outputFile, crxId, size);
+        }
+    }
+}
@@ -1,42 +1,57 @@
 package io.github.mike10004.crxtool;
 
 import com.google.common.io.BaseEncoding;
-import com.google.common.primitives.Ints;
+import com.google.protobuf.ByteString;
 import io.github.mike10004.crxtool.message.Crx3;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Proof implementation backed by the raw key and signature bytes.
+ * Lengths are computed without decoding, and base-64 encodings are
+ * produced only on demand.
+ */
 class BasicAsymmetricKeyProof implements AsymmetricKeyProof {
 
-    private final String publicKeyBase64;
-    private final String signatureBase64;
-    private final int publicKeyLength, signatureLength;
+    private final ByteString publicKey;
+    private final ByteString signature;
 
-    public BasicAsymmetricKeyProof(String publicKeyBase64, String signatureBase64) {
-        this.publicKeyBase64 = publicKeyBase64;
-        this.signatureBase64 = signatureBase64;
-        this.publicKeyLength = Ints.checkedCast(KeyPairs.countBase64EncodedBytes(publicKeyBase64));
-        this.signatureLength = Ints.checkedCast(KeyPairs.countBase64EncodedBytes(signatureBase64));
+    public BasicAsymmetricKeyProof(ByteString publicKey, ByteString signature) {
+        this.publicKey = requireNonNull(publicKey);
+        this.signature = requireNonNull(signature);
     }
 
     @Override
     public String getPublicKeyBase64() {
-        return publicKeyBase64;
+        return BASE_64.encode(publicKey.toByteArray());
     }
 
     @Override
     public String getSignatureBase64() {
-        return signatureBase64;
+        return BASE_64.encode(signature.toByteArray());
+    }
+
+    @Override
+    public ByteBuffer getPublicKeyBytes() {
+        return publicKey.asReadOnlyByteBuffer();
+    }
+
+    @Override
+    public ByteBuffer getSignatureBytes() {
+        return signature.asReadOnlyByteBuffer();
     }
 
     @Override
     public int getPublicKeyLength() {
-        return publicKeyLength;
+        return publicKey.size();
     }
 
     @Override
     public int getSignatureLength() {
-        return signatureLength;
+        return signature.size();
     }
 
     @Override
@@ -44,20 +59,18 @@ class BasicAsymmetricKeyProof implements AsymmetricKeyProof {
         if (this == o) return true;
         if (!(o instanceof BasicAsymmetricKeyProof)) return false;
         BasicAsymmetricKeyProof that = (BasicAsymmetricKeyProof) o;
-        return Objects.equals(publicKeyBase64, that.publicKeyBase64) &&
-                Objects.equals(signatureBase64, that.signatureBase64);
+        return Objects.equals(publicKey, that.publicKey) &&
+                Objects.equals(signature, that.signature);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(publicKeyBase64, signatureBase64);
+        return Objects.hash(publicKey, signature);
     }
 
     private static final BaseEncoding BASE_64 = BaseEncoding.base64();
 
     public static AsymmetricKeyProof fromMessage(Crx3.AsymmetricKeyProof source) {
-        String publicKeyBase64 = BASE_64.encode(source.getPublicKey().toByteArray());
-        String signatureBase64 = BASE_64.encode(source.getSignature().toByteArray());
-        return new BasicAsymmetricKeyProof(publicKeyBase64, signatureBase64);
+        return new BasicAsymmetricKeyProof(source.getPublicKey(), source.getSignature());
     }
 }
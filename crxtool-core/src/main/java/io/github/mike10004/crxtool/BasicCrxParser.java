@@ -9,7 +9,14 @@ import com.google.common.primitives.UnsignedInteger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Basic implementation of a Chrome extension parser.
@@ -23,7 +30,7 @@ public class BasicCrxParser implements CrxParser {
      */
     public BasicCrxParser() {}
 
-    private void checkMagicNumber(String magicNumber) throws CrxParsingException {
+    private static void checkMagicNumber(String magicNumber) throws CrxParsingException {
         if (!"Cr24".equals(magicNumber)) {
             try {
                 byte[] magicNumberBytes = magicNumber.getBytes(StandardCharsets.US_ASCII);
@@ -59,12 +66,181 @@ public class BasicCrxParser implements CrxParser {
         return new BasicCrxInventory(metadata, state.dump());
     }
 
+    /**
+     * Parses a CRX file by mapping it into memory. The header fields are read
+     * directly from the mapped buffer, and no stream is consumed. The archive
+     * begins at {@link CrxInventory#archiveOffset()} in the file.
+     * @param crxFile the CRX file
+     * @return a new inventory instance
+     * @throws IOException if I/O goes awry
+     */
+    @Override
+    public CrxInventory parseInventory(Path crxFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(crxFile, StandardOpenOption.READ)) {
+            return parseInventory(channel);
+        }
+    }
+
+    /**
+     * Parses a CRX file by mapping it into memory. Parsing begins at the start
+     * of the file, regardless of the channel's position, which is not modified.
+     * @param crxChannel channel open for reading
+     * @return a new inventory instance
+     * @throws IOException if I/O goes awry
+     * @see #parseInventory(Path)
+     */
+    public CrxInventory parseInventory(FileChannel crxChannel) throws IOException {
+        long mappedLength = Math.min(crxChannel.size(), Integer.MAX_VALUE);
+        MappedByteBuffer mapped = crxChannel.map(FileChannel.MapMode.READ_ONLY, 0, mappedLength);
+        return parseInventory(mapped);
+    }
+
+    /**
+     * Parses a CRX file by reading exactly the bytes of the header with positional reads.
+     * The fixed-size prefix is read first, then the length fields it specifies determine
+     * how many more bytes are read. Nothing beyond the header is read or mapped.
+     * @param crxFile the CRX file
+     * @return a new inventory instance
+     * @throws IOException if I/O goes awry
+     */
+    @Override
+    public CrxInventory parseHeaderOnly(Path crxFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(crxFile, StandardOpenOption.READ)) {
+            return parseHeaderOnly(channel);
+        }
+    }
+
+    /**
+     * Parses a CRX file by reading exactly the bytes of the header with positional reads.
+     * Parsing begins at the start of the file, regardless of the channel's position,
+     * which is not modified.
+     * @param crxChannel channel open for reading
+     * @return a new inventory instance
+     * @throws IOException if I/O goes awry
+     * @see #parseHeaderOnly(Path)
+     */
+    public CrxInventory parseHeaderOnly(FileChannel crxChannel) throws IOException {
+        return parseInventory(readHeaderBytes(crxChannel));
+    }
+
+    /**
+     * Reads exactly the bytes of a CRX file header with positional reads on a channel.
+     * The header comprises everything up to the beginning of the archive.
+     * @param crxChannel the channel
+     * @return a buffer containing the header bytes
+     * @throws IOException if the header is malformed or reading fails
+     */
+    static ByteBuffer readHeaderBytes(FileChannel crxChannel) throws IOException {
+        return readHeaderBytes(new SequentialReader() {
+            private long position;
+
+            @Override
+            public void readFully(ByteBuffer dst) throws IOException {
+                int length = dst.remaining();
+                ByteBuffers.readFully(crxChannel, dst, position);
+                position += length;
+            }
+        });
+    }
+
+    /**
+     * Reads exactly the bytes of a CRX file header from a stream. Upon return, the
+     * stream is positioned at the beginning of the archive.
+     * @param crxInput the stream
+     * @return a buffer containing the header bytes
+     * @throws IOException if the header is malformed or reading fails
+     */
+    static ByteBuffer readHeaderBytes(InputStream crxInput) throws IOException {
+        return readHeaderBytes(dst -> {
+            ByteStreams.readFully(crxInput, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            ((Buffer) dst).position(dst.limit());
+        });
+    }
+
+    private interface SequentialReader {
+        void readFully(ByteBuffer dst) throws IOException;
+    }
+
+    private static ByteBuffer readHeaderBytes(SequentialReader in) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(HEADER_PREFIX_LEN_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        in.readFully(prefix);
+        byte[] magicNumberBytes = new byte[EXPECTED_MAGIC_NUMBER_LEN_BYTES];
+        ByteBuffer magicNumberView = prefix.duplicate();
+        ((Buffer) magicNumberView).rewind();
+        magicNumberView.get(magicNumberBytes);
+        checkMagicNumber(new String(magicNumberBytes, StandardCharsets.US_ASCII));
+        CrxVersion version = toCrxVersion(prefix.getInt(EXPECTED_MAGIC_NUMBER_LEN_BYTES));
+        ByteBuffer lengthFields = ByteBuffer.allocate(0);
+        long headerLength;
+        switch (version) {
+            case CRX2:
+                lengthFields = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                in.readFully(lengthFields);
+                headerLength = HEADER_PREFIX_LEN_BYTES + Integer.BYTES
+                        + Integer.toUnsignedLong(prefix.getInt(8)) + Integer.toUnsignedLong(lengthFields.getInt(0));
+                break;
+            case CRX3:
+                headerLength = HEADER_PREFIX_LEN_BYTES + Integer.toUnsignedLong(prefix.getInt(8));
+                break;
+            default:
+                throw new CrxInterpreter.UnsupportedCrxVersionException("version " + version + " is not supported");
+        }
+        if (headerLength > MAX_HEADER_LEN_BYTES) {
+            throw new CrxParsingException(String.format("reported header length is insane: %s", headerLength));
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) headerLength);
+        ((Buffer) prefix).flip();
+        ((Buffer) lengthFields).flip();
+        header.put(prefix);
+        header.put(lengthFields);
+        in.readFully(header);
+        ((Buffer) header).flip();
+        return header;
+    }
+
+    // magic number, version, and first length field
+    private static final int HEADER_PREFIX_LEN_BYTES = 12;
+
+    // guards against allocating a huge buffer; interpreters apply tighter limits
+    private static final int MAX_HEADER_LEN_BYTES = 1024 * 1024;
+
+    CrxInventory parseInventory(ByteBuffer crxBuffer) throws IOException {
+        ByteBuffer buffer = crxBuffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        ParsingState state = StreamParsingState.fromBuffer(buffer);
+        String magicNumber = readMagicNumber(buffer, state);
+        checkMagicNumber(magicNumber);
+        CrxVersion version = readVersion(buffer, state);
+        CrxInterpreter interpreter = getCrxInterpreter(magicNumber, version);
+        CrxMetadata metadata = interpreter.parseMetadataAfterVersion(buffer, state);
+        return new BasicCrxInventory(metadata, state.dump());
+    }
+
+    protected String readMagicNumber(ByteBuffer in, ParsingState state) throws IOException {
+        byte[] magicNumberBytes;
+        try (SegmentMark ignore = state.markStart("magicNumber")) {
+            magicNumberBytes = ByteBuffers.getBytes(in, EXPECTED_MAGIC_NUMBER_LEN_BYTES);
+        }
+        return new String(magicNumberBytes, StandardCharsets.US_ASCII);
+    }
+
+    protected CrxVersion readVersion(ByteBuffer in, ParsingState state) throws IOException {
+        int versionIdentifier;
+        try (SegmentMark ignore = state.markStart("version")) {
+            versionIdentifier = ByteBuffers.getUnsignedInt(in);
+        }
+        return toCrxVersion(versionIdentifier);
+    }
+
     protected CrxVersion readVersion(InputStream crxInput, ParsingState state) throws IOException {
         LittleEndianDataInputStream in = new LittleEndianDataInputStream(crxInput);
         int versionIdentifier;
         try (SegmentMark ignore = state.markStart("version")) {
             versionIdentifier = Ints.checkedCast(UnsignedInteger.fromIntBits(in.readInt()).longValue());
         }
+        return toCrxVersion(versionIdentifier);
+    }
+
+    private static CrxVersion toCrxVersion(int versionIdentifier) throws CrxParsingException {
         try {
             return CrxVersion.fromIdentifier(versionIdentifier);
         } catch (IllegalArgumentException e) {
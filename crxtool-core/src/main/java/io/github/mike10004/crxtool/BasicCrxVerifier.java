@@ -0,0 +1,223 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Basic implementation of a verifier. A {@link Signature} is initialized for each proof,
+ * and the signed data is streamed once, updating all of them together.
+ */
+class BasicCrxVerifier implements CrxVerifier {
+
+    private static final BasicCrxVerifier DEFAULT_INSTANCE = new BasicCrxVerifier(CrxParser.getDefault());
+
+    private static final String CRX2_SIGNATURE_ALGORITHM = "SHA1withRSA";
+    private static final String CRX2_KEY_ALGORITHM = "RSA";
+
+    private final CrxParser parser;
+
+    public BasicCrxVerifier(CrxParser parser) {
+        this.parser = requireNonNull(parser);
+    }
+
+    static BasicCrxVerifier getDefaultInstance() {
+        return DEFAULT_INSTANCE;
+    }
+
+    @Override
+    public CrxVerification verify(InputStream crxInputStream) throws IOException {
+        CrxInventory inventory = parser.parseInventory(crxInputStream);
+        return verify(inventory, crxInputStream);
+    }
+
+    @Override
+    public CrxVerification verify(Path crxFile) throws IOException {
+        CrxInventory inventory = parser.parseInventory(crxFile);
+        try (FileChannel channel = FileChannel.open(crxFile, StandardOpenOption.READ)) {
+            channel.position(inventory.archiveOffset());
+            return verify(inventory, Channels.newInputStream(channel));
+        }
+    }
+
+    @Override
+    public CrxVerification verify(CrxInventory inventory, InputStream archive) throws IOException {
+        CrxMetadata metadata = inventory.metadata();
+        List<AsymmetricKeyProofContainer> proofs = metadata.getFileHeader().getAllAsymmetricKeyProofs();
+        List<PendingProof> pending = new ArrayList<>(proofs.size());
+        List<Signature> signatures = new ArrayList<>(proofs.size());
+        for (AsymmetricKeyProofContainer proof : proofs) {
+            PendingProof p = new PendingProof(proof);
+            try {
+                p.signature = initVerify(proof);
+                signatures.add(p.signature);
+            } catch (GeneralSecurityException | RuntimeException e) {
+                p.message = "could not initialize signature: " + e;
+            }
+            pending.add(p);
+        }
+        ByteString signedHeaderData = null;
+        if (metadata.getCrxVersion() == CrxVersion.CRX3) {
+            signedHeaderData = getSignedHeaderData(metadata.getFileHeader());
+            if (signedHeaderData == null) {
+                // nothing can be verified, but the archive is still read to the end
+                signatures.clear();
+                for (PendingProof p : pending) {
+                    p.signature = null;
+                    p.message = "signed header data is not available from " + metadata.getFileHeader().getClass().getName();
+                }
+            }
+        }
+        OutputStream sink = new SignatureUpdatingOutputStream(signatures);
+        if (signedHeaderData != null) {
+            sink.write(Crx3Packer.createSignedPayloadPrefix(signedHeaderData));
+        }
+        ByteStreams.copy(archive, sink);
+        ImmutableList.Builder<CrxVerification.ProofResult> results = ImmutableList.builder();
+        for (PendingProof p : pending) {
+            results.add(p.complete());
+        }
+        return new Verification(results.build());
+    }
+
+    @Nullable
+    private static ByteString getSignedHeaderData(CrxFileHeader fileHeader) {
+        if (fileHeader instanceof MessageFileHeader) {
+            return ((MessageFileHeader) fileHeader).getSignedHeaderData();
+        }
+        return null;
+    }
+
+    private static Signature initVerify(AsymmetricKeyProofContainer container) throws GeneralSecurityException {
+        String signatureAlgorithm, keyAlgorithm;
+        CrxProofAlgorithm algorithm = container.algorithm();
+        if (algorithm instanceof Crx3ProofAlgorithm) {
+            signatureAlgorithm = ((Crx3ProofAlgorithm) algorithm).javaSignatureAlgorithm();
+            keyAlgorithm = ((Crx3ProofAlgorithm) algorithm).javaKeyAlgorithm();
+        } else if (algorithm == Crx2ProofAlgorithm.sha1_with_rsa) {
+            signatureAlgorithm = CRX2_SIGNATURE_ALGORITHM;
+            keyAlgorithm = CRX2_KEY_ALGORITHM;
+        } else {
+            throw new GeneralSecurityException("unsupported algorithm: " + algorithm.crxFileHeaderKey());
+        }
+        PublicKey publicKey = KeyPairs.getKeyFactory(keyAlgorithm).generatePublic(new X509EncodedKeySpec(toArray(container.proof().getPublicKeyBytes())));
+        Signature signature = Signature.getInstance(signatureAlgorithm);
+        signature.initVerify(publicKey);
+        return signature;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static class PendingProof {
+
+        public final AsymmetricKeyProofContainer proof;
+        @Nullable
+        public Signature signature;
+        @Nullable
+        public String message;
+
+        public PendingProof(AsymmetricKeyProofContainer proof) {
+            this.proof = proof;
+        }
+
+        public CrxVerification.ProofResult complete() {
+            boolean valid = false;
+            if (signature != null) {
+                try {
+                    valid = signature.verify(toArray(proof.proof().getSignatureBytes()));
+                    if (!valid) {
+                        message = "signature does not match signed data";
+                    }
+                } catch (SignatureException e) {
+                    message = "signature could not be verified: " + e;
+                }
+            }
+            return new ProofResult(proof, valid, message);
+        }
+    }
+
+    private static class ProofResult implements CrxVerification.ProofResult {
+
+        private final AsymmetricKeyProofContainer proof;
+        private final boolean valid;
+        @Nullable
+        private final String message;
+
+        public ProofResult(AsymmetricKeyProofContainer proof, boolean valid, @Nullable String message) {
+            this.proof = requireNonNull(proof);
+            this.valid = valid;
+            this.message = message;
+        }
+
+        @Override
+        public AsymmetricKeyProofContainer proof() {
+            return proof;
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Nullable
+        @Override
+        public String message() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper("ProofResult")
+                    .add("algorithm", proof.algorithm().crxFileHeaderKey())
+                    .add("valid", valid)
+                    .add("message", message)
+                    .toString();
+        }
+    }
+
+    private static class Verification implements CrxVerification {
+
+        private final List<ProofResult> proofResults;
+
+        public Verification(List<ProofResult> proofResults) {
+            this.proofResults = requireNonNull(proofResults);
+        }
+
+        @Override
+        public List<ProofResult> proofResults() {
+            return proofResults;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper("CrxVerification")
+                    .add("verified", isVerified())
+                    .add("proofResults", proofResults)
+                    .toString();
+        }
+    }
+}
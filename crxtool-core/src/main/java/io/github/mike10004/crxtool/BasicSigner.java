@@ -1,6 +1,8 @@
 package io.github.mike10004.crxtool;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -12,6 +14,8 @@ import static java.util.Objects.requireNonNull;
 
 class BasicSigner implements Signer {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private final String hashFunction;
     private final String cryptoAlgorithm;
     @Nullable
@@ -32,14 +36,52 @@ class BasicSigner implements Signer {
     }
 
     @Override
-    public byte[] sign(byte[] input, PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+    public Signature initSign(PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException {
         Signature signature = Signature.getInstance(getSignatureAlgorithm());
+        initSign(signature, privateKey);
+        return signature;
+    }
+
+    /**
+     * Initializes or reinitializes a signature object for signing.
+     * Reinitializing discards any data already supplied to the object.
+     * @param signature the signature object
+     * @param privateKey the private key
+     * @throws InvalidKeyException if the key is invalid
+     */
+    protected void initSign(Signature signature, PrivateKey privateKey) throws InvalidKeyException {
         if (rng == null) {
             signature.initSign(privateKey);
         } else {
             signature.initSign(privateKey, rng);
         }
+    }
+
+    @Override
+    public byte[] sign(byte[] input, PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Signature signature = initSign(privateKey);
         signature.update(input);
         return signature.sign();
     }
+
+    /**
+     * Signs the bytes supplied by an input source, updating the signature
+     * with one fixed-size buffer at a time.
+     */
+    @Override
+    public byte[] sign(InputSource input, PrivateKey privateKey) throws IOException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Signature signature = initSign(privateKey);
+        update(signature, input);
+        return signature.sign();
+    }
+
+    static void update(Signature signature, InputSource input) throws IOException, SignatureException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = input.openStream()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                signature.update(buffer, 0, n);
+            }
+        }
+    }
 }
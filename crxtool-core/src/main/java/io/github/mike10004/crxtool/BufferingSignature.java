@@ -0,0 +1,80 @@
+package io.github.mike10004.crxtool;
+
+import java.io.ByteArrayOutputStream;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Signature that collects the data supplied to it in memory and signs it all at once
+ * with a {@link Signer} that does not support incremental signing. Verification is
+ * not supported.
+ */
+class BufferingSignature extends Signature {
+
+    private final Signer signer;
+    private final ByteArrayOutputStream buffer;
+    private PrivateKey privateKey;
+
+    public BufferingSignature(Signer signer, PrivateKey privateKey) throws InvalidKeyException {
+        super(signer.getClass().getName());
+        this.signer = requireNonNull(signer);
+        buffer = new ByteArrayOutputStream();
+        initSign(privateKey);
+    }
+
+    @Override
+    protected void engineInitVerify(PublicKey publicKey) throws InvalidKeyException {
+        throw new InvalidKeyException("verification is not supported");
+    }
+
+    @Override
+    protected void engineInitSign(PrivateKey privateKey) {
+        this.privateKey = requireNonNull(privateKey);
+        buffer.reset();
+    }
+
+    @Override
+    protected void engineUpdate(byte b) {
+        buffer.write(b);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] b, int off, int len) {
+        buffer.write(b, off, len);
+    }
+
+    @Override
+    protected byte[] engineSign() throws SignatureException {
+        try {
+            return signer.sign(buffer.toByteArray(), privateKey);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new SignatureException(e);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    @Override
+    protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
+        throw new SignatureException("verification is not supported");
+    }
+
+    @Override
+    @Deprecated
+    protected void engineSetParameter(String param, Object value) {
+        throw new InvalidParameterException("parameters are not supported");
+    }
+
+    @Override
+    @Deprecated
+    protected Object engineGetParameter(String param) {
+        throw new InvalidParameterException("parameters are not supported");
+    }
+}
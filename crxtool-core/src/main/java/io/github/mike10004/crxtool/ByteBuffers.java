@@ -0,0 +1,119 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.UnsignedInteger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Static utility methods for reading CRX data from byte buffers.
+ * Methods throw {@link EOFException} instead of {@link java.nio.BufferUnderflowException}
+ * so that callers see the same exceptions as when parsing streams.
+ */
+class ByteBuffers {
+
+    private ByteBuffers() {}
+
+    private static void checkRemaining(ByteBuffer buffer, int length) throws EOFException {
+        if (buffer.remaining() < length) {
+            throw new EOFException(String.format("expected %d bytes but only %d remain", length, buffer.remaining()));
+        }
+    }
+
+    /**
+     * Reads an unsigned 32-bit integer in the buffer's byte order.
+     * @param buffer the buffer
+     * @return the value
+     * @throws EOFException if fewer than 4 bytes remain
+     * @throws IllegalArgumentException if the value does not fit in a signed int
+     */
+    public static int getUnsignedInt(ByteBuffer buffer) throws EOFException {
+        checkRemaining(buffer, Integer.BYTES);
+        return Ints.checkedCast(UnsignedInteger.fromIntBits(buffer.getInt()).longValue());
+    }
+
+    /**
+     * Reads bytes into a new array.
+     * @param buffer the buffer
+     * @param length the number of bytes to read
+     * @return a new array
+     * @throws EOFException if fewer than {@code length} bytes remain
+     */
+    public static byte[] getBytes(ByteBuffer buffer, int length) throws EOFException {
+        checkRemaining(buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a view of the next bytes of the buffer and advances the buffer's position past them.
+     * @param buffer the buffer
+     * @param length the length of the view
+     * @return a buffer that shares content with the argument buffer
+     * @throws EOFException if fewer than {@code length} bytes remain
+     */
+    public static ByteBuffer take(ByteBuffer buffer, int length) throws EOFException {
+        checkRemaining(buffer, length);
+        ByteBuffer view = buffer.slice();
+        // called through Buffer so that Java 8 runtimes can link the methods
+        ((Buffer) view).limit(length);
+        ((Buffer) buffer).position(buffer.position() + length);
+        return view;
+    }
+
+    /**
+     * Fills a buffer with positional reads from a file channel. The channel's position is not modified.
+     * @param channel the channel
+     * @param dst the destination buffer
+     * @param position file position of the first byte to read
+     * @throws EOFException if the end of the file is reached before the buffer is full
+     * @throws IOException on I/O error
+     */
+    public static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position);
+            if (n < 0) {
+                throw new EOFException(String.format("end of file reached with %d bytes remaining", dst.remaining()));
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Returns an input stream that reads from a buffer, advancing the buffer's position.
+     * @param buffer the buffer
+     * @return a new input stream
+     */
+    public static InputStream newInputStream(ByteBuffer buffer) {
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+}
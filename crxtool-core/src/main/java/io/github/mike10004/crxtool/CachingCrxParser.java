@@ -0,0 +1,130 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Parser that caches inventories by the raw bytes of the CRX header.
+ * The header is read exactly, and only a header not seen before is passed
+ * to the delegate parser; on a cache hit, the previously parsed inventory
+ * instance is returned. Inventories are immutable, so sharing them is safe.
+ *
+ * <p>Cache keys are the header bytes themselves rather than a digest of them,
+ * so distinct headers can never collide. The cache evicts least-recently-used
+ * entries once it holds a maximum number of headers.
+ */
+public class CachingCrxParser implements CrxParser {
+
+    private final CrxParser delegate;
+    private final Cache<ByteString, CrxInventory> cache;
+
+    /**
+     * Constructs an instance.
+     * @param delegate the parser used on a cache miss
+     * @param maximumSize maximum number of cached inventories
+     */
+    public CachingCrxParser(CrxParser delegate, long maximumSize) {
+        checkArgument(maximumSize >= 0, "maximum size must be nonnegative");
+        this.delegate = requireNonNull(delegate);
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Parses an inventory from a stream. Exactly the header bytes are read from
+     * the stream, so upon return it is positioned at the beginning of the archive.
+     * @param crxInputStream the input stream
+     * @return the inventory
+     * @throws IOException if the header is malformed or reading fails
+     */
+    @Override
+    public CrxInventory parseInventory(InputStream crxInputStream) throws IOException {
+        return parseHeader(BasicCrxParser.readHeaderBytes(crxInputStream));
+    }
+
+    @Override
+    public CrxInventory parseInventory(Path crxFile) throws IOException {
+        return parseHeaderOnly(crxFile);
+    }
+
+    @Override
+    public CrxInventory parseHeaderOnly(Path crxFile) throws IOException {
+        ByteBuffer header;
+        try (FileChannel channel = FileChannel.open(crxFile, StandardOpenOption.READ)) {
+            header = BasicCrxParser.readHeaderBytes(channel);
+        }
+        return parseHeader(header);
+    }
+
+    private CrxInventory parseHeader(ByteBuffer header) throws IOException {
+        ByteString key = ByteString.copyFrom(header);
+        try {
+            // concurrent parses of the same header wait for a single load
+            return cache.get(key, () -> delegate.parseInventory(key.newInput()));
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, IOException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Gets the number of parses served from the cache, including those that
+     * waited for a concurrent parse of the same header.
+     * @return the hit count
+     */
+    public long hitCount() {
+        CacheStats stats = cache.stats();
+        return stats.requestCount() - stats.loadCount();
+    }
+
+    /**
+     * Gets the number of parses that were delegated.
+     * @return the miss count
+     */
+    public long missCount() {
+        return cache.stats().loadCount();
+    }
+
+    /**
+     * Gets the number of inventories evicted from the cache.
+     * @return the eviction count
+     */
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Gets the approximate number of cached inventories.
+     * @return the cache size
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all cached inventories. Statistics are not reset.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
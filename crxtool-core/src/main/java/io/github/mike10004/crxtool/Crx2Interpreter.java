@@ -1,15 +1,15 @@
 package io.github.mike10004.crxtool;
 
 import com.google.common.collect.ImmutableMultimap;
-import com.google.common.hash.HashCode;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.LittleEndianDataInputStream;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.UnsignedInteger;
+import com.google.protobuf.ByteString;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Locale;
+import java.nio.ByteBuffer;
 
 class Crx2Interpreter extends CrxInterpreterBase {
 
@@ -23,34 +23,65 @@ class Crx2Interpreter extends CrxInterpreterBase {
     @Override
     public CrxMetadata parseMetadataAfterVersion(InputStream crxInput, ParsingState state) throws IOException {
         LittleEndianDataInputStream in = new LittleEndianDataInputStream(crxInput);
-        int pubkeyLength = Ints.checkedCast(UnsignedInteger.fromIntBits(in.readInt()).longValue());
-        int signatureLength = Ints.checkedCast(UnsignedInteger.fromIntBits(in.readInt()).longValue());
+        int pubkeyLength, signatureLength;
+        try (SegmentMark ignore = state.markStart("publicKeyLength")) {
+            pubkeyLength = Ints.checkedCast(UnsignedInteger.fromIntBits(in.readInt()).longValue());
+        }
+        try (SegmentMark ignore = state.markStart("signatureLength")) {
+            signatureLength = Ints.checkedCast(UnsignedInteger.fromIntBits(in.readInt()).longValue());
+        }
+        checkLengths(pubkeyLength, signatureLength);
+        byte[] pubkeyBytes = new byte[pubkeyLength];
+        try (SegmentMark ignore = state.markStart("publicKey")) {
+            ByteStreams.readFully(crxInput, pubkeyBytes);
+        }
+        byte[] signatureBytes = new byte[signatureLength];
+        try (SegmentMark ignore = state.markStart("signature")) {
+            ByteStreams.readFully(crxInput, signatureBytes);
+        }
+        return createMetadata(pubkeyBytes, signatureBytes);
+    }
+
+    @Override
+    public CrxMetadata parseMetadataAfterVersion(ByteBuffer crxInput, ParsingState state) throws IOException {
+        int pubkeyLength, signatureLength;
+        try (SegmentMark ignore = state.markStart("publicKeyLength")) {
+            pubkeyLength = ByteBuffers.getUnsignedInt(crxInput);
+        }
+        try (SegmentMark ignore = state.markStart("signatureLength")) {
+            signatureLength = ByteBuffers.getUnsignedInt(crxInput);
+        }
+        checkLengths(pubkeyLength, signatureLength);
+        byte[] pubkeyBytes, signatureBytes;
+        try (SegmentMark ignore = state.markStart("publicKey")) {
+            pubkeyBytes = ByteBuffers.getBytes(crxInput, pubkeyLength);
+        }
+        try (SegmentMark ignore = state.markStart("signature")) {
+            signatureBytes = ByteBuffers.getBytes(crxInput, signatureLength);
+        }
+        return createMetadata(pubkeyBytes, signatureBytes);
+    }
+
+    private static void checkLengths(int pubkeyLength, int signatureLength) throws CrxParsingException {
         if (pubkeyLength <= 0 || pubkeyLength > MAX_SANE_PUBKEY_LENGTH) {
             throw new CrxParsingException(String.format("public key length is insane: %s", pubkeyLength));
         }
         if (signatureLength <= 0 || signatureLength > MAX_SANE_SIGNATURE_LENGTH) {
             throw new CrxParsingException(String.format("signature length is insane: %s", signatureLength));
         }
-        byte[] pubkeyBytes = new byte[pubkeyLength];
-        ByteStreams.readFully(crxInput, pubkeyBytes);
-        byte[] signatureBytes = new byte[signatureLength];
-        ByteStreams.readFully(crxInput, signatureBytes);
-        String pubkeyBase64 = BASE_64.encode(pubkeyBytes);
-        String signatureBase64 = BASE_64.encode(signatureBytes);
-        HashCode pubkeyHash = SHA256.hashBytes(pubkeyBytes);
-        String digest = pubkeyHash.toString().toLowerCase(Locale.ROOT);
-        StringBuilder idBuilder = new StringBuilder(ID_LEN);
-        translateDigestToId(digest, 0, ID_LEN, idBuilder);
-        String id = idBuilder.toString();
-        return new BufferedCrxMetadata(magicNumber, version, createCrx2FileHeader(pubkeyBase64, signatureBase64), id);
     }
 
-    private static CrxFileHeader createCrx2FileHeader(String pubkeyBase64, String signatureBase64) {
-        return new MapFileHeader(ImmutableMultimap.of(Crx2ProofAlgorithm.sha1_with_rsa, createCrx2Proof(pubkeyBase64, signatureBase64)));
+    private CrxMetadata createMetadata(byte[] pubkeyBytes, byte[] signatureBytes) {
+        String id = CrxIds.fromPublicKey(pubkeyBytes);
+        return new BufferedCrxMetadata(magicNumber, version, createCrx2FileHeader(pubkeyBytes, signatureBytes), id);
+    }
+
+    private static CrxFileHeader createCrx2FileHeader(byte[] pubkeyBytes, byte[] signatureBytes) {
+        return new MapFileHeader(ImmutableMultimap.of(Crx2ProofAlgorithm.sha1_with_rsa, createCrx2Proof(pubkeyBytes, signatureBytes)));
     }
 
-    private static AsymmetricKeyProof createCrx2Proof(String pubkeyBase64, String signatureBase64) {
-        return new BasicAsymmetricKeyProof(pubkeyBase64, signatureBase64);
+    private static AsymmetricKeyProof createCrx2Proof(byte[] pubkeyBytes, byte[] signatureBytes) {
+        return new BasicAsymmetricKeyProof(ByteString.copyFrom(pubkeyBytes), ByteString.copyFrom(signatureBytes));
     }
 
 }
@@ -1,17 +1,16 @@
 package io.github.mike10004.crxtool;
 
-import com.google.common.hash.HashCode;
-import com.google.common.hash.HashFunction;
 import com.google.common.io.ByteStreams;
-import com.google.common.io.CharSource;
 import com.google.common.io.LittleEndianDataInputStream;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.UnsignedInteger;
+import com.google.protobuf.ByteString;
 import io.github.mike10004.crxtool.message.Crx3;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Locale;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * https://cs.chromium.org/chromium/src/components/crx_file/crx3.proto
@@ -31,33 +30,70 @@ class Crx3Interpreter extends CrxInterpreterBase {
         try (SegmentMark ignore = state.markStart("fileHeaderLength")) {
             headerLen = Ints.checkedCast(UnsignedInteger.fromIntBits(in.readInt()).longValue());
         }
-        if (headerLen <= 0 || headerLen > MAX_SANE_HEADER_LEN) {
-            throw new CrxParsingException(String.format("reported header length is insane: %s", headerLen));
-        }
+        checkHeaderLength(headerLen);
         byte[] headerBytes = new byte[headerLen];
         try (SegmentMark ignore = state.markStart("fileHeader")) {
             ByteStreams.readFully(crxInput, headerBytes);
         }
-        return parseFileHeader(headerBytes);
+        return parseFileHeader(Crx3.CrxFileHeader.parseFrom(headerBytes));
+    }
+
+    /**
+     * Parses the header directly from the buffer without copying it into an intermediate array.
+     */
+    @Override
+    public CrxMetadata parseMetadataAfterVersion(ByteBuffer crxInput, ParsingState state) throws IOException {
+        int headerLen;
+        try (SegmentMark ignore = state.markStart("fileHeaderLength")) {
+            headerLen = ByteBuffers.getUnsignedInt(crxInput);
+        }
+        checkHeaderLength(headerLen);
+        ByteBuffer headerBytes;
+        try (SegmentMark ignore = state.markStart("fileHeader")) {
+            headerBytes = ByteBuffers.take(crxInput, headerLen);
+        }
+        return parseFileHeader(Crx3.CrxFileHeader.parseFrom(headerBytes));
+    }
+
+    private static void checkHeaderLength(int headerLen) throws CrxParsingException {
+        if (headerLen <= 0 || headerLen > MAX_SANE_HEADER_LEN) {
+            throw new CrxParsingException(String.format("reported header length is insane: %s", headerLen));
+        }
     }
 
-    private CrxMetadata parseFileHeader(byte[] headerBytes) throws IOException {
-        Crx3.CrxFileHeader parsedHeader = Crx3.CrxFileHeader.parseFrom(headerBytes);
-        CrxFileHeader fileHeader = new MessageFileHeader(parsedHeader);
-        AsymmetricKeyProof proof = fileHeader.getAllAsymmetricKeyProofs().stream()
-                .findFirst().orElseThrow(() -> new CrxParsingException("header does not contain any asymmetric key proofs"))
-                .proof();
-        HashCode pubkeyHash = hashBase64(SHA256, proof.getPublicKeyBase64());
-        String digest = pubkeyHash.toString().toLowerCase(Locale.ROOT);
-        StringBuilder idBuilder = new StringBuilder(ID_LEN);
-        translateDigestToId(digest, 0, ID_LEN, idBuilder);
-        String id = idBuilder.toString();
+    private CrxMetadata parseFileHeader(Crx3.CrxFileHeader parsedHeader) throws IOException {
+        MessageFileHeader fileHeader = new MessageFileHeader(parsedHeader);
+        List<AsymmetricKeyProofContainer> proofs = fileHeader.getAllAsymmetricKeyProofs();
+        if (proofs.isEmpty()) {
+            throw new CrxParsingException("header does not contain any asymmetric key proofs");
+        }
+        AsymmetricKeyProof proof = selectIdentityProof(fileHeader, proofs);
+        String id = CrxIds.fromPublicKey(proof.getPublicKeyBytes());
         return new BufferedCrxMetadata(magicNumber, version, fileHeader, id);
     }
 
-    @SuppressWarnings("SameParameterValue")
-    protected HashCode hashBase64(HashFunction hashFunction, String base64Data) throws IOException {
-        return BASE_64.decodingSource(CharSource.wrap(base64Data)).hash(hashFunction);
+    /**
+     * Selects the proof whose public key matches the crx_id in the signed header data.
+     * A file signed with multiple keys (e.g. developer and publisher keys) has its ID
+     * determined by one of them, which need not come first in the header.
+     * Falls back to the first proof if the signed header data does not specify an ID.
+     */
+    private static AsymmetricKeyProof selectIdentityProof(MessageFileHeader fileHeader, List<AsymmetricKeyProofContainer> proofs) throws IOException {
+        AsymmetricKeyProof first = proofs.get(0).proof();
+        if (proofs.size() == 1) {
+            return first;
+        }
+        ByteString crxId = Crx3.SignedData.parseFrom(fileHeader.getSignedHeaderData()).getCrxId();
+        if (crxId.size() != CrxIds.DIGEST_LENGTH) {
+            return first;
+        }
+        String expectedId = CrxIds.fromDigest(crxId.toByteArray());
+        for (AsymmetricKeyProofContainer container : proofs) {
+            if (expectedId.equals(CrxIds.fromPublicKey(container.proof().getPublicKeyBytes()))) {
+                return container.proof();
+            }
+        }
+        return first;
     }
 
 }
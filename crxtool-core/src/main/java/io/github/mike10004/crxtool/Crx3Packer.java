@@ -1,20 +1,33 @@
 package io.github.mike10004.crxtool;
 
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hashing;
 import com.google.common.io.LittleEndianDataOutputStream;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedOutputStream;
 import io.github.mike10004.crxtool.message.Crx3;
 
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
 import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Crx3Packer implements CrxPacker {
 
@@ -31,82 +44,296 @@ public class Crx3Packer implements CrxPacker {
 
     @Override
     public void packExtension(InputSource zipBytes, KeyPair keyPair, OutputStream output) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
-        byte[] crxId = deriveCrxId(keyPair);
+        packExtension(zipBytes, Collections.singletonList(keyPair), output);
+    }
+
+    @Override
+    public void packExtension(InputSource zipBytes, KeyPair keyPair, WritableByteChannel output) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        packExtension(zipBytes, Collections.singletonList(keyPair), output);
+    }
+
+    /**
+     * Packs an extension from a directory. The signatures are computed as the archive
+     * is compressed: the compressed bytes are written to a temporary spill file and
+     * supplied to the signatures in the same pass, so the archive is not read back
+     * until it is copied to the output after the header.
+     */
+    @Override
+    public void packExtension(Path extensionDir, @Nullable ZipConfig zipConfig, KeyPair keyPair, OutputStream output) throws IOException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        packExtension(extensionDir, zipConfig, Collections.singletonList(keyPair), output);
+    }
+
+    /**
+     * Packs an extension from a directory with a proof for each of several keys.
+     * @param extensionDir the directory containing the extension files
+     * @param zipConfig options for zipping
+     * @param keyPairs key pairs; must be nonempty and contain no public key more than once
+     * @param output the output stream
+     * @throws IOException if reading, writing, or zipping data fails
+     * @throws NoSuchAlgorithmException if a signature algorithm is not supported
+     * @throws InvalidKeyException if a key is invalid
+     * @throws SignatureException on signature error
+     * @see #packExtension(Path, ZipConfig, KeyPair, OutputStream)
+     */
+    public void packExtension(Path extensionDir, @Nullable ZipConfig zipConfig, List<KeyPair> keyPairs, OutputStream output) throws IOException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Path spillFile = java.nio.file.Files.createTempFile("crxtool-archive", ".zip");
+        try {
+            byte[] crxHeader;
+            try (OutputStream spill = java.nio.file.Files.newOutputStream(spillFile)) {
+                crxHeader = createCrxHeader(signatureSink -> {
+                    OutputStream tee = new BufferedOutputStream(new TeeOutputStream(spill, signatureSink), PIPELINE_BUFFER_SIZE);
+                    Zipping.zipDirectory(extensionDir, zipConfig, tee);
+                    tee.flush();
+                }, keyPairs);
+            }
+            output.write(crxHeader);
+            InputSource.fromFile(spillFile).copyTo(output);
+            output.flush();
+        } finally {
+            java.nio.file.Files.deleteIfExists(spillFile);
+        }
+    }
+
+    private static final int PIPELINE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Packs an extension with a proof for each of several keys, such as a developer key
+     * and a publisher key. The first key pair determines the extension ID. The archive is
+     * read once, and the data is supplied to every key's signature as it is read.
+     * @param zipBytes byte source supplying zip data
+     * @param keyPairs key pairs; must be nonempty and contain no public key more than once
+     * @param output output stream
+     * @throws IOException if reading or writing data fails
+     * @throws NoSuchAlgorithmException if a signature algorithm is not supported
+     * @throws InvalidKeyException if a key is invalid
+     * @throws SignatureException on signature error
+     */
+    public void packExtension(InputSource zipBytes, List<KeyPair> keyPairs, OutputStream output) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        byte[] crxHeader = createCrxHeader(zipBytes, keyPairs);
+        output.write(crxHeader);
+        zipBytes.copyTo(output);
+        output.flush();
+    }
+
+    /**
+     * Packs an extension with a proof for each of several keys, writing the result to a channel.
+     * @param zipBytes byte source supplying zip data
+     * @param keyPairs key pairs; must be nonempty and contain no public key more than once
+     * @param output output channel
+     * @throws IOException if reading or writing data fails
+     * @throws NoSuchAlgorithmException if a signature algorithm is not supported
+     * @throws InvalidKeyException if a key is invalid
+     * @throws SignatureException on signature error
+     * @see #packExtension(InputSource, List, OutputStream)
+     */
+    public void packExtension(InputSource zipBytes, List<KeyPair> keyPairs, WritableByteChannel output) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        byte[] crxHeader = createCrxHeader(zipBytes, keyPairs);
+        ByteBuffer buffer = ByteBuffer.wrap(crxHeader);
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        zipBytes.copyTo(output);
+    }
+
+    /**
+     * Creates the bytes that precede the archive in the CRX file: the magic number,
+     * the version, the file header length, and the file header.
+     */
+    private byte[] createCrxHeader(InputSource zipBytes, List<KeyPair> keyPairs) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        return createCrxHeader(zipBytes::copyTo, keyPairs);
+    }
+
+    /**
+     * Creates the bytes that precede the archive in the CRX file, obtaining the
+     * archive bytes that are to be signed from a writer that is invoked once.
+     */
+    private byte[] createCrxHeader(ArchiveWriter archive, List<KeyPair> keyPairs) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        checkKeyPairs(keyPairs);
+        byte[] crxId = deriveCrxId(keyPairs.get(0));
         Crx3.SignedData signedData = Crx3.SignedData.newBuilder()
                 .setCrxId(ByteString.copyFrom(crxId))
                 .build();
-        byte[] signature = sign(zipBytes, signedData, keyPair);
-        Crx3.AsymmetricKeyProof proof = Crx3.AsymmetricKeyProof.newBuilder()
-                .setPublicKey(getPublicKeyByteString(keyPair))
-                .setSignature(ByteString.copyFrom(signature))
-                .build();
-        Crx3.CrxFileHeader fileHeader = Crx3.CrxFileHeader.newBuilder()
-                .setSignedHeaderData(signedData.toByteString())
-                .addSha256WithRsa(proof)
-                .build();
-
-        LittleEndianDataOutputStream leOutput = new LittleEndianDataOutputStream(output);
+        List<Signature> signatures = new ArrayList<>(keyPairs.size());
+        for (KeyPair keyPair : keyPairs) {
+            signatures.add(createSigner(keyPair).initSign(keyPair.getPrivate()));
+        }
+        OutputStream signatureSink = new SignatureUpdatingOutputStream(signatures);
+        signatureSink.write(createSignedPayloadPrefix(signedData.toByteString()));
+        archive.writeTo(signatureSink);
+        Crx3.CrxFileHeader.Builder fileHeaderBuilder = Crx3.CrxFileHeader.newBuilder()
+                .setSignedHeaderData(signedData.toByteString());
+        for (int i = 0; i < keyPairs.size(); i++) {
+            KeyPair keyPair = keyPairs.get(i);
+            Crx3.AsymmetricKeyProof proof = Crx3.AsymmetricKeyProof.newBuilder()
+                    .setPublicKey(getPublicKeyByteString(keyPair))
+                    .setSignature(ByteString.copyFrom(signatures.get(i).sign()))
+                    .build();
+            addProof(fileHeaderBuilder, keyPair, proof);
+        }
+        Crx3.CrxFileHeader fileHeader = fileHeaderBuilder.build();
+        int fileHeaderSize = fileHeader.getSerializedSize();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(PREFIX_LEN + fileHeaderSize);
+        LittleEndianDataOutputStream leOutput = new LittleEndianDataOutputStream(buffer);
         CrxPackers.writeMagicNumber(leOutput, MAGIC_NUMBER);
         CrxPackers.writeFormatVersion(leOutput, getCrxVersion());
-        int fileHeaderSize = fileHeader.getSerializedSize();
         leOutput.writeInt(fileHeaderSize);
         leOutput.flush();
-        CodedOutputStream codedOutput = CodedOutputStream.newInstance(output);
+        CodedOutputStream codedOutput = CodedOutputStream.newInstance(buffer);
         fileHeader.writeTo(codedOutput);
         codedOutput.flush();
-        zipBytes.copyTo(output);
-        output.flush();
+        return buffer.toByteArray();
+    }
+
+    private interface ArchiveWriter {
+        void writeTo(OutputStream signatureSink) throws IOException;
     }
 
     /**
-     * See {@code crx3.proto}.
+     * Output stream that writes every byte to two destinations.
      */
-    protected byte[] deriveCrxId(KeyPair keyPair) {
-        byte[] publicKeyBytes = keyPair.getPublic().getEncoded();
-        byte[] hash = idHashFunction().hashBytes(publicKeyBytes).asBytes();
-        byte[] id = new byte[CRX_ID_LEN];
-        System.arraycopy(hash, 0, id, 0, Math.min(id.length, hash.length));
-        return id;
+    private static class TeeOutputStream extends OutputStream {
+
+        private final OutputStream first, second;
+
+        public TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+
+    private static void checkKeyPairs(List<KeyPair> keyPairs) {
+        if (keyPairs.isEmpty()) {
+            throw new IllegalArgumentException("at least one key pair is required");
+        }
+        Set<ByteString> publicKeys = new HashSet<>();
+        for (KeyPair keyPair : keyPairs) {
+            if (!publicKeys.add(ByteString.copyFrom(keyPair.getPublic().getEncoded()))) {
+                throw new IllegalArgumentException("duplicate public key in key pair list");
+            }
+        }
+    }
+
+    private static void addProof(Crx3.CrxFileHeader.Builder fileHeader, KeyPair keyPair, Crx3.AsymmetricKeyProof proof) {
+        switch (proofAlgorithm(keyPair)) {
+            case sha256_with_rsa:
+                fileHeader.addSha256WithRsa(proof);
+                break;
+            case sha256_with_ecdsa:
+                fileHeader.addSha256WithEcdsa(proof);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported key algorithm: " + keyPair.getPublic().getAlgorithm());
+        }
+    }
+
+    private static Crx3ProofAlgorithm proofAlgorithm(KeyPair keyPair) {
+        String keyAlgorithm = keyPair.getPublic().getAlgorithm();
+        for (Crx3ProofAlgorithm algorithm : Crx3ProofAlgorithm.values()) {
+            if (algorithm.javaKeyAlgorithm().equals(keyAlgorithm)) {
+                if (algorithm == Crx3ProofAlgorithm.sha256_with_ecdsa) {
+                    checkP256(keyPair.getPublic());
+                }
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("unsupported key algorithm: " + keyAlgorithm);
     }
 
-    private static HashFunction idHashFunction() {
-        return Hashing.sha256();
+    private static void checkP256(PublicKey publicKey) {
+        boolean p256;
+        try {
+            p256 = publicKey instanceof ECPublicKey && EcKeys.isP256(((ECPublicKey) publicKey).getParams());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("curve not supported: " + KeyPairs.EC_CURVE_NAME, e);
+        }
+        if (!p256) {
+            throw new IllegalArgumentException("EC key is not on curve " + KeyPairs.EC_CURVE_NAME);
+        }
     }
 
-    private static final int CRX_ID_LEN = 16;
-    private static final String HASH_FUNCTION = "SHA256";
-    private static final String CRYPTO_ALGORITHM = "RSA";
+    /**
+     * Length of magic number, version, and header length fields.
+     */
+    private static final int PREFIX_LEN = 12;
 
     /**
+     * See {@code crx3.proto}.
+     */
+    protected byte[] deriveCrxId(KeyPair keyPair) {
+        return CrxIds.digestPublicKey(keyPair.getPublic().getEncoded());
+    }
+
+    /**
+     * Creates the portion of the signed payload that precedes the archive.
      * From crx3.proto documentation:
      * <pre>
      * All proofs are on the value:
      * "CRX3 SignedData\x00" + signed_header_size + signed_header_data + archive
      * </pre>
-     * @param zipBytes zip archive byte source
-     * @param signedHeaderData signed header data
-     * @param keyPair the key pair
-     * @return the signature
+     * @param signedHeaderData serialized signed header data
+     * @return the prefix bytes
      * @throws IOException on I/O error
-     * @throws SignatureException on signature error
-     * @throws InvalidKeyException on invalid key
-     * @throws NoSuchAlgorithmException if algorithm spec is not valid
      */
-    protected byte[] sign(InputSource zipBytes, Crx3.SignedData signedHeaderData, KeyPair keyPair) throws IOException, SignatureException, InvalidKeyException, NoSuchAlgorithmException {
-        byte[] payload = zipBytes.read();
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(payload.length + 1024); // TODO compute actual expected size
-        buffer.write("CRX3 SignedData".getBytes(StandardCharsets.UTF_8));
-        buffer.write(new byte[]{0});
+    static byte[] createSignedPayloadPrefix(ByteString signedHeaderData) throws IOException {
         byte[] signedHeaderDataBytes = signedHeaderData.toByteArray();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(SIGNED_DATA_PREFIX.length + 4 + signedHeaderDataBytes.length);
+        buffer.write(SIGNED_DATA_PREFIX);
         CrxPackers.writeLittleEndian(signedHeaderDataBytes.length, buffer);
         buffer.write(signedHeaderDataBytes);
-        buffer.write(payload);
-        byte[] data = buffer.toByteArray();
-        return createSigner().sign(data, keyPair.getPrivate());
+        return buffer.toByteArray();
+    }
+
+    private static final byte[] SIGNED_DATA_PREFIX = "CRX3 SignedData\0".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Signers shared by all instances. They cache provider lookups but hold no
+     * keys or signature objects, so packers may be used concurrently.
+     */
+    private static final Map<Crx3ProofAlgorithm, Signer> SHARED_SIGNERS = createSharedSigners();
+
+    private static Map<Crx3ProofAlgorithm, Signer> createSharedSigners() {
+        Map<Crx3ProofAlgorithm, Signer> signers = new EnumMap<>(Crx3ProofAlgorithm.class);
+        for (Crx3ProofAlgorithm algorithm : Crx3ProofAlgorithm.values()) {
+            signers.put(algorithm, new ProviderCachingSigner(algorithm.javaHashFunction(), algorithm.javaCryptoAlgorithm()));
+        }
+        return Collections.unmodifiableMap(signers);
     }
 
     protected Signer createSigner() {
-        return new BasicSigner(HASH_FUNCTION, CRYPTO_ALGORITHM);
+        return SHARED_SIGNERS.get(Crx3ProofAlgorithm.sha256_with_rsa);
+    }
+
+    /**
+     * Creates a signer for a key pair. Signers that do not override
+     * {@link Signer#initSign(java.security.PrivateKey)} hold the archive in memory while signing.
+     * RSA keys produce {@code sha256_with_rsa} proofs and EC keys produce {@code sha256_with_ecdsa} proofs.
+     * @param keyPair the key pair
+     * @return a signer
+     */
+    protected Signer createSigner(KeyPair keyPair) {
+        Crx3ProofAlgorithm algorithm = proofAlgorithm(keyPair);
+        if (algorithm == Crx3ProofAlgorithm.sha256_with_rsa) {
+            return createSigner();
+        }
+        return SHARED_SIGNERS.get(algorithm);
     }
 
     protected ByteString getPublicKeyByteString(KeyPair keyPair) {
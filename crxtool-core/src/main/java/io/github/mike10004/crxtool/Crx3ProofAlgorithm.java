@@ -2,16 +2,18 @@ package io.github.mike10004.crxtool;
 
 enum Crx3ProofAlgorithm implements CrxProofAlgorithm {
 
-    sha256_with_rsa("SHA256", "RSA", "sha256_with_rsa"),
-    sha256_with_ecdsa("SHA256", "RSA", "sha256_with_ecdsa");
+    sha256_with_rsa("SHA256", "RSA", "RSA", "sha256_with_rsa"),
+    sha256_with_ecdsa("SHA256", "ECDSA", "EC", "sha256_with_ecdsa");
 
     private final String javaHashFunction;
     private final String javaCryptoAlgorithm;
+    private final String javaKeyAlgorithm;
     final String fileHeaderKey;
 
-    Crx3ProofAlgorithm(String javaHashFunction, String javaCryptoAlgorithm, String fileHeaderKey) {
+    Crx3ProofAlgorithm(String javaHashFunction, String javaCryptoAlgorithm, String javaKeyAlgorithm, String fileHeaderKey) {
         this.javaHashFunction = javaHashFunction;
         this.javaCryptoAlgorithm = javaCryptoAlgorithm;
+        this.javaKeyAlgorithm = javaKeyAlgorithm;
         this.fileHeaderKey = fileHeaderKey;
     }
 
@@ -23,6 +25,22 @@ enum Crx3ProofAlgorithm implements CrxProofAlgorithm {
         return javaCryptoAlgorithm;
     }
 
+    /**
+     * Gets the name of the key algorithm, as accepted by {@link java.security.KeyFactory#getInstance(String)}.
+     * @return the key algorithm
+     */
+    public String javaKeyAlgorithm() {
+        return javaKeyAlgorithm;
+    }
+
+    /**
+     * Gets the name of the signature algorithm, as accepted by {@link java.security.Signature#getInstance(String)}.
+     * @return the signature algorithm
+     */
+    public String javaSignatureAlgorithm() {
+        return String.format("%sWith%s", javaHashFunction, javaCryptoAlgorithm);
+    }
+
     @Override
     public String crxFileHeaderKey() {
         return fileHeaderKey;
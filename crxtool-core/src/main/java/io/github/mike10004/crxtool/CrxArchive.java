@@ -0,0 +1,122 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Random-access view of the zip archive inside a CRX file. The central directory
+ * is read when the archive is opened, and entry data is read on demand by seeking
+ * to the entry's local header, so only the requested entries are ever read.
+ *
+ * <p>Entry input streams use positional reads, so several may be open at once,
+ * including from different threads. Zip64 archives are not supported.
+ */
+public class CrxArchive implements Closeable {
+
+    private final CrxInventory inventory;
+    private final ZipArchive archive;
+
+    private CrxArchive(CrxInventory inventory, FileChannel file) throws IOException {
+        this.inventory = requireNonNull(inventory);
+        archive = new ZipArchive(file, inventory.archiveOffset());
+    }
+
+    /**
+     * Opens the archive inside a CRX file, parsing the header with the default parser.
+     * @param crxFile the CRX file
+     * @return a new archive instance, which must be closed
+     * @throws IOException if the header or central directory is malformed or reading fails
+     */
+    public static CrxArchive open(Path crxFile) throws IOException {
+        return open(crxFile, CrxParser.getDefault());
+    }
+
+    /**
+     * Opens the archive inside a CRX file.
+     * @param crxFile the CRX file
+     * @param parser the parser used to read the CRX header
+     * @return a new archive instance, which must be closed
+     * @throws IOException if the header or central directory is malformed or reading fails
+     */
+    public static CrxArchive open(Path crxFile, CrxParser parser) throws IOException {
+        FileChannel channel = FileChannel.open(crxFile, StandardOpenOption.READ);
+        try {
+            return new CrxArchive(parser.parseInventory(crxFile), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the inventory parsed from the CRX header.
+     * @return the inventory
+     */
+    public CrxInventory inventory() {
+        return inventory;
+    }
+
+    /**
+     * Gets the entries in central directory order.
+     * @return an immutable list of entries
+     */
+    public List<ZipEntry> entries() {
+        return archive.entries();
+    }
+
+    /**
+     * Gets an entry by name.
+     * @param name the entry name
+     * @return the entry, or null if not present
+     */
+    @Nullable
+    public ZipEntry getEntry(String name) {
+        return archive.getEntry(name);
+    }
+
+    /**
+     * Gets the archive comment.
+     * @return the comment, or null if absent
+     */
+    @Nullable
+    public String getComment() {
+        return archive.getComment();
+    }
+
+    /**
+     * Opens a stream that supplies the uncompressed data of an entry.
+     * @param entry the entry, as returned by this instance
+     * @return a new input stream
+     * @throws ZipException if the entry is not present, is encrypted, or uses an unsupported method
+     * @throws IOException on I/O error
+     */
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        return archive.getInputStream(entry);
+    }
+
+    /**
+     * Returns a new channel over the archive portion of the file. Position zero of the
+     * channel is the first byte of the archive. The channel is read-only, and closing
+     * it does not close this instance.
+     * @return a new channel
+     */
+    public SeekableByteChannel newArchiveChannel() {
+        return archive.newArchiveChannel();
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+}
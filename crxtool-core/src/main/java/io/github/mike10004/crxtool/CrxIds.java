@@ -0,0 +1,92 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * Static utility methods relating to extension IDs.
+ *
+ * <p>An extension ID is derived from the first 16 bytes of the SHA-256 digest
+ * of the public key. Each nibble of those bytes is mapped to one of the
+ * characters {@code a} through {@code p}, yielding a 32-character string.
+ */
+public class CrxIds {
+
+    /**
+     * Number of digest bytes that constitute an ID.
+     */
+    public static final int DIGEST_LENGTH = 16;
+
+    /**
+     * Number of characters in an ID.
+     */
+    public static final int ID_LENGTH = DIGEST_LENGTH * 2;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+    private CrxIds() {}
+
+    /**
+     * Encodes the ID characters for a digest into a character array, without allocating.
+     * @param digest the digest; only the first {@link #DIGEST_LENGTH} bytes after the offset are used
+     * @param offset offset of the first digest byte
+     * @param destination the destination array
+     * @param destinationOffset offset of the first destination character
+     */
+    public static void encode(byte[] digest, int offset, char[] destination, int destinationOffset) {
+        checkPositionIndexes(offset, offset + DIGEST_LENGTH, digest.length);
+        checkPositionIndexes(destinationOffset, destinationOffset + ID_LENGTH, destination.length);
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int b = digest[offset + i];
+            destination[destinationOffset++] = (char) ('a' + ((b >> 4) & 0x0F));
+            destination[destinationOffset++] = (char) ('a' + (b & 0x0F));
+        }
+    }
+
+    /**
+     * Creates an ID from a digest.
+     * @param digest the digest; must be at least {@link #DIGEST_LENGTH} bytes
+     * @return the ID
+     */
+    public static String fromDigest(byte[] digest) {
+        checkArgument(digest.length >= DIGEST_LENGTH, "digest too short: %s", digest.length);
+        char[] id = new char[ID_LENGTH];
+        encode(digest, 0, id, 0);
+        return new String(id);
+    }
+
+    /**
+     * Creates an ID from the bytes of a public key.
+     * @param publicKeyBytes the encoded public key
+     * @return the ID
+     */
+    public static String fromPublicKey(byte[] publicKeyBytes) {
+        return fromDigest(HASH_FUNCTION.hashBytes(publicKeyBytes).asBytes());
+    }
+
+    /**
+     * Creates an ID from the bytes of a public key. The buffer's position is advanced to its limit.
+     * @param publicKeyBytes buffer containing the encoded public key
+     * @return the ID
+     */
+    public static String fromPublicKey(ByteBuffer publicKeyBytes) {
+        return fromDigest(HASH_FUNCTION.hashBytes(publicKeyBytes).asBytes());
+    }
+
+    /**
+     * Computes the binary ID of a public key, which is the first {@link #DIGEST_LENGTH} bytes of its digest.
+     * This is the value stored as the {@code crx_id} of CRX3 signed header data.
+     * @param publicKeyBytes the encoded public key
+     * @return the binary ID
+     */
+    static byte[] digestPublicKey(byte[] publicKeyBytes) {
+        byte[] id = new byte[DIGEST_LENGTH];
+        HASH_FUNCTION.hashBytes(publicKeyBytes).writeBytesTo(id, 0, DIGEST_LENGTH);
+        return id;
+    }
+}
@@ -2,6 +2,7 @@ package io.github.mike10004.crxtool;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Interface of a service that parses metadata from an input stream.
@@ -18,6 +19,20 @@ public interface CrxInterpreter {
      */
     CrxMetadata parseMetadataAfterVersion(InputStream crxInput, ParsingState state) throws IOException;
 
+    /**
+     * Parses the metadata that follows the version entry from a buffer. Upon return,
+     * the buffer is positioned at the first byte of the archive. The default implementation
+     * reads the buffer as a stream; implementations should override this to read
+     * directly from the buffer.
+     * @param crxInput buffer positioned immediately after the version, in little-endian byte order
+     * @param state parsing state
+     * @return a metadata object
+     * @throws IOException if the buffer does not contain a well-formed header
+     */
+    default CrxMetadata parseMetadataAfterVersion(ByteBuffer crxInput, ParsingState state) throws IOException {
+        return parseMetadataAfterVersion(ByteBuffers.newInputStream(crxInput), state);
+    }
+
     /**
      * Exception thrown if the version specified by a CRX file is not supported.
      */
@@ -19,5 +19,17 @@ public interface CrxInventory {
      */
     List<StreamSegment> streamSegments();
 
+    /**
+     * Gets the offset of the zip archive from the beginning of the CRX file.
+     * This is the end of the last stream segment.
+     * @return the archive offset, in bytes
+     */
+    default long archiveOffset() {
+        return streamSegments().stream()
+                .mapToLong(StreamSegment::end)
+                .max()
+                .orElseThrow(() -> new IllegalStateException("no stream segments"));
+    }
+
 }
 
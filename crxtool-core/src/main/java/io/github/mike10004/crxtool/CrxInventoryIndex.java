@@ -0,0 +1,378 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.protobuf.ByteString;
+import io.github.mike10004.crxtool.message.Crx3;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Persistent index of parsed CRX inventories. Each file's inventory is stored
+ * with the file's path, size, and last-modified time, and is served from memory
+ * as long as the file's size and last-modified time are unchanged.
+ *
+ * <p>The index is an append-only log of checksummed records that is read into a
+ * hash table when opened. A record that was only partially written, for example
+ * because the process was killed, is discarded along with anything after it.
+ * Records for a path supersede earlier records for the same path;
+ * use {@link #compact()} to drop superseded records.
+ *
+ * <p>CRX3 headers are stored as the raw protobuf bytes of the file header, and
+ * CRX2 proofs as the raw public key and signature bytes. A CRX3 header that was not
+ * parsed from protobuf bytes, such as one from a custom parser, is stored as a
+ * protobuf message containing its proofs; its signed header data is not preserved.
+ */
+public class CrxInventoryIndex implements Closeable {
+
+    private static final byte[] FILE_MAGIC = {'C', 'R', 'X', 'I', 'D', 'X', 0, 1};
+
+    private final Path indexFile;
+    private final CrxParser parser;
+    private final Map<String, IndexEntry> entries;
+    private FileChannel channel;
+
+    private CrxInventoryIndex(Path indexFile, CrxParser parser) {
+        this.indexFile = requireNonNull(indexFile);
+        this.parser = requireNonNull(parser);
+        entries = new HashMap<>();
+    }
+
+    /**
+     * Opens an index file, creating it if it does not exist. Files are parsed
+     * with the default parser.
+     * @param indexFile the index file
+     * @return the index, which must be closed
+     * @throws IOException if the file cannot be read or is not an index file
+     */
+    public static CrxInventoryIndex open(Path indexFile) throws IOException {
+        return open(indexFile, CrxParser.getDefault());
+    }
+
+    /**
+     * Opens an index file, creating it if it does not exist.
+     * @param indexFile the index file
+     * @param parser the parser used for files that are not indexed or have changed
+     * @return the index, which must be closed
+     * @throws IOException if the file cannot be read or is not an index file
+     */
+    public static CrxInventoryIndex open(Path indexFile, CrxParser parser) throws IOException {
+        CrxInventoryIndex index = new CrxInventoryIndex(indexFile, parser);
+        index.load();
+        return index;
+    }
+
+    /**
+     * Gets the inventory of a CRX file, parsing it only if it is not indexed
+     * or has changed since it was indexed.
+     * @param crxFile the CRX file
+     * @return the inventory
+     * @throws IOException if the file must be parsed and parsing fails
+     */
+    public CrxInventory get(Path crxFile) throws IOException {
+        String key = toKey(crxFile);
+        BasicFileAttributes attributes = Files.readAttributes(crxFile, BasicFileAttributes.class);
+        long size = attributes.size(), lastModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            IndexEntry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                return entry.inventory;
+            }
+        }
+        CrxInventory inventory = parser.parseHeaderOnly(crxFile);
+        IndexEntry entry = new IndexEntry(key, size, lastModified, inventory);
+        byte[] record = encode(entry);
+        synchronized (this) {
+            append(record);
+            entries.put(key, entry);
+        }
+        return inventory;
+    }
+
+    /**
+     * Gets the indexed inventory of a file without parsing it.
+     * @param crxFile the CRX file
+     * @return the inventory, or null if the file is not indexed or has changed
+     * @throws IOException if the file's attributes cannot be read
+     */
+    @Nullable
+    public CrxInventory getIfPresent(Path crxFile) throws IOException {
+        String key = toKey(crxFile);
+        BasicFileAttributes attributes = Files.readAttributes(crxFile, BasicFileAttributes.class);
+        IndexEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.size == attributes.size() && entry.lastModified == attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)) {
+            return entry.inventory;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of indexed files.
+     * @return the count of files
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Rewrites the index file so that it contains only the latest record for each file.
+     * @throws IOException on I/O error
+     */
+    public synchronized void compact() throws IOException {
+        Path tempFile = Files.createTempFile(indexFile.toAbsolutePath().getParent(), indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, ByteBuffer.wrap(FILE_MAGIC));
+                for (IndexEntry entry : entries.values()) {
+                    writeFully(out, ByteBuffer.wrap(encode(entry)));
+                }
+                out.force(false);
+            }
+            channel.close();
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+            if (!channel.isOpen()) {
+                channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static String toKey(Path crxFile) {
+        return crxFile.toAbsolutePath().normalize().toString();
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeFully(channel, ByteBuffer.wrap(FILE_MAGIC));
+                return;
+            }
+            long validLength = readRecords();
+            if (validLength < channel.size()) {
+                channel.truncate(validLength);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads records into the table.
+     * @return the length of the valid portion of the file
+     */
+    private long readRecords() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        byte[] magic = new byte[FILE_MAGIC.length];
+        try {
+            in.readFully(magic);
+        } catch (EOFException e) {
+            magic = new byte[0];
+        }
+        if (!Arrays.equals(FILE_MAGIC, magic)) {
+            throw new CrxParsingException("not an index file: " + indexFile);
+        }
+        long validLength = FILE_MAGIC.length;
+        while (true) {
+            IndexEntry entry;
+            int recordLength;
+            try {
+                int payloadLength = in.readInt();
+                if (payloadLength < 0 || payloadLength > channel.size()) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                in.readFully(payload);
+                long checksum = in.readInt() & 0xFFFFFFFFL;
+                if (checksum != crc32(payload)) {
+                    break;
+                }
+                entry = decode(payload);
+                recordLength = Integer.BYTES + payloadLength + Integer.BYTES;
+            } catch (EOFException e) {
+                break;
+            }
+            entries.put(entry.key, entry);
+            validLength += recordLength;
+        }
+        return validLength;
+    }
+
+    private void append(byte[] record) throws IOException {
+        writeFully(channel.position(channel.size()), ByteBuffer.wrap(record));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Encodes an entry as a framed record.
+     * @return the record
+     */
+    private static byte[] encode(IndexEntry entry) throws IOException {
+        CrxMetadata metadata = entry.inventory.metadata();
+        CrxFileHeader fileHeader = metadata.getFileHeader();
+        ByteArrayOutputStream payloadBuffer = new ByteArrayOutputStream(256 + fileHeader.numBytes());
+        DataOutputStream out = new DataOutputStream(payloadBuffer);
+        out.writeUTF(entry.key);
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModified);
+        out.writeUTF(metadata.getMagicNumber());
+        out.writeByte(metadata.getCrxVersion().identifier());
+        out.writeUTF(metadata.getId());
+        List<StreamSegment> segments = entry.inventory.streamSegments();
+        out.writeInt(segments.size());
+        for (StreamSegment segment : segments) {
+            out.writeUTF(segment.label());
+            out.writeLong(segment.start());
+            out.writeLong(segment.end());
+        }
+        switch (metadata.getCrxVersion()) {
+            case CRX3:
+                writeBytes(out, toCrx3Message(fileHeader));
+                break;
+            case CRX2:
+                List<AsymmetricKeyProof> proofs = fileHeader.getAsymmetricKeyProofs(Crx2ProofAlgorithm.sha1_with_rsa);
+                out.writeInt(proofs.size());
+                for (AsymmetricKeyProof proof : proofs) {
+                    writeBytes(out, ByteString.copyFrom(proof.getPublicKeyBytes()).toByteArray());
+                    writeBytes(out, ByteString.copyFrom(proof.getSignatureBytes()).toByteArray());
+                }
+                break;
+            default:
+                throw new CrxInterpreter.UnsupportedCrxVersionException("version " + metadata.getCrxVersion() + " is not supported");
+        }
+        out.flush();
+        byte[] payload = payloadBuffer.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + payload.length + Integer.BYTES);
+        record.putInt(payload.length);
+        record.put(payload);
+        record.putInt((int) crc32(payload));
+        return record.array();
+    }
+
+    private static byte[] toCrx3Message(CrxFileHeader fileHeader) {
+        if (fileHeader instanceof MessageFileHeader) {
+            return ((MessageFileHeader) fileHeader).toByteArray();
+        }
+        Crx3.CrxFileHeader.Builder message = Crx3.CrxFileHeader.newBuilder();
+        for (AsymmetricKeyProof proof : fileHeader.getAsymmetricKeyProofs(Crx3ProofAlgorithm.sha256_with_rsa)) {
+            message.addSha256WithRsa(toMessage(proof));
+        }
+        for (AsymmetricKeyProof proof : fileHeader.getAsymmetricKeyProofs(Crx3ProofAlgorithm.sha256_with_ecdsa)) {
+            message.addSha256WithEcdsa(toMessage(proof));
+        }
+        return message.build().toByteArray();
+    }
+
+    private static Crx3.AsymmetricKeyProof toMessage(AsymmetricKeyProof proof) {
+        return Crx3.AsymmetricKeyProof.newBuilder()
+                .setPublicKey(ByteString.copyFrom(proof.getPublicKeyBytes()))
+                .setSignature(ByteString.copyFrom(proof.getSignatureBytes()))
+                .build();
+    }
+
+    private static IndexEntry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String key = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String magicNumber = in.readUTF();
+        CrxVersion version = CrxVersion.fromIdentifier(in.readUnsignedByte());
+        String id = in.readUTF();
+        int numSegments = in.readInt();
+        ImmutableList.Builder<StreamSegment> segments = ImmutableList.builder();
+        for (int i = 0; i < numSegments; i++) {
+            segments.add(new StreamParsingState.StreamMark(in.readUTF(), in.readLong(), in.readLong()));
+        }
+        CrxFileHeader fileHeader;
+        if (version == CrxVersion.CRX3) {
+            fileHeader = new MessageFileHeader(Crx3.CrxFileHeader.parseFrom(readBytes(in)));
+        } else {
+            ImmutableMultimap.Builder<CrxProofAlgorithm, AsymmetricKeyProof> proofs = ImmutableMultimap.builder();
+            int numProofs = in.readInt();
+            for (int i = 0; i < numProofs; i++) {
+                ByteString publicKey = ByteString.copyFrom(readBytes(in));
+                ByteString signature = ByteString.copyFrom(readBytes(in));
+                proofs.put(Crx2ProofAlgorithm.sha1_with_rsa, new BasicAsymmetricKeyProof(publicKey, signature));
+            }
+            fileHeader = new MapFileHeader(proofs.build());
+        }
+        CrxMetadata metadata = new BufferedCrxMetadata(magicNumber, version, fileHeader, id);
+        return new IndexEntry(key, size, lastModified, new BasicCrxInventory(metadata, segments.build()));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new CrxParsingException("invalid length in index record: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static class IndexEntry {
+
+        public final String key;
+        public final long size;
+        public final long lastModified;
+        public final CrxInventory inventory;
+
+        public IndexEntry(String key, long size, long lastModified, CrxInventory inventory) {
+            this.key = key;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.inventory = requireNonNull(inventory);
+        }
+    }
+}
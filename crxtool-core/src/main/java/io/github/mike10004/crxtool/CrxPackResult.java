@@ -0,0 +1,36 @@
+package io.github.mike10004.crxtool;
+
+import java.nio.file.Path;
+
+/**
+ * Interface that represents the outcome of packing an extension into a file.
+ * @see CrxPacker#packExtensionAsync(Path, ZipConfig, java.security.KeyPair, Path, java.util.concurrent.Executor, java.util.concurrent.Executor)
+ */
+public interface CrxPackResult {
+
+    /**
+     * Gets the file that was written.
+     * @return the output file
+     */
+    Path outputFile();
+
+    /**
+     * Gets the ID of the packed extension, which is derived from the public key
+     * that determines the extension's identity.
+     * @return the extension ID
+     */
+    String crxId();
+
+    /**
+     * Gets the size of the output file.
+     * @return the length in bytes
+     */
+    long size();
+
+    /**
+     * Gets the CRX format version of the output file.
+     * @return the version
+     */
+    CrxVersion crxVersion();
+
+}
@@ -3,6 +3,8 @@ package io.github.mike10004.crxtool;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -10,6 +12,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Interface of a service that packs a Chrome extension from source files.
@@ -31,7 +35,9 @@ public interface CrxPacker {
     }
 
     /**
-     * Packs an extension from a given directory and key pair.
+     * Packs an extension from a given directory and key pair. The directory
+     * is zipped to a temporary file, which is deleted after packing, so the
+     * archive is never held in memory in its entirety.
      * @param extensionDir the directory containing the extension files
      * @param keyPair the key pair to sign with
      * @param zipConfig options for zipping
@@ -42,8 +48,13 @@ public interface CrxPacker {
      * @throws SignatureException if thrown by {@link java.security.Signature#update(byte[])} or {@link Signature#sign()}
      */
     default void packExtension(Path extensionDir, @Nullable ZipConfig zipConfig, KeyPair keyPair, OutputStream output) throws IOException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
-        byte[] zipBytes = Zipping.zipDirectory(extensionDir, zipConfig);
-        packExtension(InputSource.wrap(zipBytes), keyPair, output);
+        Path zipFile = java.nio.file.Files.createTempFile("crxtool-archive", ".zip");
+        try {
+            InputSource zipBytes = Zipping.zipDirectory(extensionDir, zipConfig, zipFile);
+            packExtension(zipBytes, keyPair, output);
+        } finally {
+            java.nio.file.Files.deleteIfExists(zipFile);
+        }
     }
 
     /**
@@ -59,6 +70,61 @@ public interface CrxPacker {
      */
     void packExtension(InputSource zipBytes, KeyPair keyPair, OutputStream output) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException;
 
+    /**
+     * Packs an extension given the zip data and a key pair, writing the result to a channel.
+     * If the zip data source is file-backed and the channel is a file or socket channel,
+     * implementations may transfer the archive bytes without copying them through user space.
+     * @param zipBytes byte source supplying zip data
+     * @param keyPair key pair
+     * @param output output channel
+     * @throws IOException if reading or writing data fails
+     * @throws NoSuchAlgorithmException if RSA is not supported
+     * @throws InvalidKeyException if thrown by {@link java.security.Signature#initSign(PrivateKey)}
+     * @throws SignatureException if thrown by {@link java.security.Signature#update(byte[])} or {@link Signature#sign()}
+     * @see InputSource#fromFile(Path)
+     */
+    default void packExtension(InputSource zipBytes, KeyPair keyPair, WritableByteChannel output) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        OutputStream outputStream = Channels.newOutputStream(output);
+        packExtension(zipBytes, keyPair, outputStream);
+        outputStream.flush();
+    }
+
+    /**
+     * Packs an extension into a file without blocking the calling thread.
+     * The directory is zipped to a temporary file by a task on the zip executor,
+     * and the archive is then signed and written to the output file by a task on
+     * the sign executor. The returned future completes exceptionally with a
+     * {@link java.util.concurrent.CompletionException} whose cause is the
+     * {@link IOException} or {@link java.security.GeneralSecurityException} that
+     * caused packing to fail; if the failure occurs while writing the output file, it is deleted.
+     * Cancelling the future does not interrupt a stage that has already started.
+     * @param extensionDir the directory containing the extension files
+     * @param zipConfig options for zipping
+     * @param keyPair the key pair to sign with
+     * @param outputFile the pathname of the CRX file to write
+     * @param zipExecutor executor that runs the zip stage
+     * @param signExecutor executor that runs the sign stage
+     * @return a future that completes when the output file has been written
+     */
+    default CompletableFuture<CrxPackResult> packExtensionAsync(Path extensionDir, @Nullable ZipConfig zipConfig, KeyPair keyPair, Path outputFile, Executor zipExecutor, Executor signExecutor) {
+        return new AsyncPacking(this, zipExecutor, signExecutor).pack(extensionDir, zipConfig, keyPair, outputFile);
+    }
+
+    /**
+     * Packs an extension into a file without blocking the calling thread,
+     * running all stages on one executor.
+     * @param extensionDir the directory containing the extension files
+     * @param zipConfig options for zipping
+     * @param keyPair the key pair to sign with
+     * @param outputFile the pathname of the CRX file to write
+     * @param executor executor that runs the zip and sign stages
+     * @return a future that completes when the output file has been written
+     * @see #packExtensionAsync(Path, ZipConfig, KeyPair, Path, Executor, Executor)
+     */
+    default CompletableFuture<CrxPackResult> packExtensionAsync(Path extensionDir, @Nullable ZipConfig zipConfig, KeyPair keyPair, Path outputFile, Executor executor) {
+        return packExtensionAsync(extensionDir, zipConfig, keyPair, outputFile, executor, executor);
+    }
+
     /**
      * Gets a default instance. This currently returns a packer that packs
      * a version 3 CRX.
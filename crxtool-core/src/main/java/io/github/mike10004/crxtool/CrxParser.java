@@ -2,6 +2,7 @@ package io.github.mike10004.crxtool;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 /**
  * Interface of a service that analyzes Chrome extension metadata.
@@ -36,6 +37,35 @@ public interface CrxParser {
      */
     CrxInventory parseInventory(InputStream crxInputStream) throws IOException;
 
+    /**
+     * Parses the extension metadata from a file. The archive begins at
+     * {@link CrxInventory#archiveOffset()} in the file.
+     * The default implementation reads the header from a stream.
+     * @param crxFile the CRX file
+     * @return a new inventory instance
+     * @throws IOException if I/O goes awry
+     */
+    default CrxInventory parseInventory(Path crxFile) throws IOException {
+        try (InputStream in = java.nio.file.Files.newInputStream(crxFile)) {
+            return parseInventory(in);
+        }
+    }
+
+    /**
+     * Parses the extension metadata from a file, reading only the bytes of the header.
+     * This is suitable for files that are still being written, provided the header
+     * is complete. The default implementation reads the header from an unbuffered stream.
+     * @param crxFile the CRX file
+     * @return a new inventory instance
+     * @throws java.io.EOFException if the file ends before the header does
+     * @throws IOException if I/O goes awry
+     */
+    default CrxInventory parseHeaderOnly(Path crxFile) throws IOException {
+        try (InputStream in = java.nio.file.Files.newInputStream(crxFile)) {
+            return parseInventory(in);
+        }
+    }
+
     /**
      * Gets a default (immutable) parser instance.
      * @return a parser
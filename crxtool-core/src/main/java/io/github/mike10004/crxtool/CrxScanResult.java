@@ -0,0 +1,43 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Interface that represents the outcome of parsing one file during a scan.
+ * Exactly one of {@link #inventory()} and {@link #failure()} is non-null.
+ */
+public interface CrxScanResult {
+
+    /**
+     * Gets the file that was parsed.
+     * @return the file
+     */
+    Path file();
+
+    /**
+     * Gets the inventory parsed from the file.
+     * @return the inventory, or null if parsing failed
+     */
+    @Nullable
+    CrxInventory inventory();
+
+    /**
+     * Gets the exception that caused parsing to fail. Malformed files
+     * produce a {@link CrxParsingException}; other I/O errors are
+     * reported as thrown by the parser.
+     * @return the exception, or null if parsing succeeded
+     */
+    @Nullable
+    IOException failure();
+
+    /**
+     * Checks whether parsing succeeded.
+     * @return true if an inventory is present
+     */
+    default boolean isSuccess() {
+        return inventory() != null;
+    }
+
+}
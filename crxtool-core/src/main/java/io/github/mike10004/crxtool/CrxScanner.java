@@ -0,0 +1,216 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that parses the inventories of many CRX files concurrently.
+ * Files are parsed on a configurable executor, and at most a fixed number
+ * of files are in flight at once. Results are delivered to a callback on
+ * the thread that invoked the scan, in order of completion.
+ *
+ * <p>Parsing is dominated by I/O wait, so on Java 21 or later an executor
+ * that starts a virtual thread per task is a good fit; pair it with a
+ * bound on files in flight to limit open file handles.
+ */
+public class CrxScanner {
+
+    private final CrxParser parser;
+    private final Executor executor;
+    private final int maxFilesInFlight;
+    private final Predicate<? super Path> fileFilter;
+
+    private CrxScanner(Builder builder) {
+        parser = builder.parser;
+        executor = builder.executor;
+        maxFilesInFlight = builder.maxFilesInFlight;
+        fileFilter = builder.fileFilter;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Scans the regular files in a directory tree that are accepted by this scanner's file filter.
+     * @param directory the root of the tree
+     * @param callback callback that receives each result
+     * @throws IOException if walking the tree fails or the scan is interrupted
+     */
+    public void scan(Path directory, Consumer<? super CrxScanResult> callback) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            scan(files.filter(Files::isRegularFile).filter(fileFilter), callback);
+        }
+    }
+
+    /**
+     * Scans each of a stream of files. The file filter is not applied.
+     * @param files the files
+     * @param callback callback that receives each result
+     * @throws IOException if the scan is interrupted
+     */
+    public void scan(Stream<Path> files, Consumer<? super CrxScanResult> callback) throws IOException {
+        CompletionService<CrxScanResult> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<CrxScanResult>> inFlight = new ArrayList<>(maxFilesInFlight);
+        Iterator<Path> remaining = files.iterator();
+        try {
+            while (remaining.hasNext() || !inFlight.isEmpty()) {
+                while (inFlight.size() < maxFilesInFlight && remaining.hasNext()) {
+                    Path file = remaining.next();
+                    inFlight.add(completionService.submit(() -> parse(file)));
+                }
+                Future<CrxScanResult> completed = completionService.take();
+                inFlight.remove(completed);
+                callback.accept(completed.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while scanning");
+        } catch (ExecutionException e) {
+            // parse() does not throw, so this indicates an Error
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Scans a directory tree and collects the results.
+     * @param directory the root of the tree
+     * @return the results, in order of completion
+     * @throws IOException if walking the tree fails or the scan is interrupted
+     */
+    public List<CrxScanResult> scanAll(Path directory) throws IOException {
+        List<CrxScanResult> results = new ArrayList<>();
+        scan(directory, results::add);
+        return results;
+    }
+
+    private CrxScanResult parse(Path file) {
+        try {
+            return new ScanResult(file, parser.parseInventory(file), null);
+        } catch (IOException e) {
+            return new ScanResult(file, null, e);
+        } catch (RuntimeException e) {
+            return new ScanResult(file, null, new CrxParsingException("failed to parse " + file, e));
+        }
+    }
+
+    /**
+     * Tests whether a file name has a CRX-like extension, such as {@code .crx} or {@code .crx3}.
+     * This is the default file filter.
+     * @param file the file
+     * @return true if the file name indicates a CRX file
+     */
+    public static boolean hasCrxExtension(Path file) {
+        Path filename = file.getFileName();
+        return filename != null && filename.toString().toLowerCase(Locale.ROOT).matches(".*\\.crx\\d?");
+    }
+
+    private static class ScanResult implements CrxScanResult {
+
+        private final Path file;
+        @Nullable
+        private final CrxInventory inventory;
+        @Nullable
+        private final IOException failure;
+
+        public ScanResult(Path file, @Nullable CrxInventory inventory, @Nullable IOException failure) {
+            this.file = requireNonNull(file);
+            this.inventory = inventory;
+            this.failure = failure;
+        }
+
+        @Override
+        public Path file() {
+            return file;
+        }
+
+        @Nullable
+        @Override
+        public CrxInventory inventory() {
+            return inventory;
+        }
+
+        @Nullable
+        @Override
+        public IOException failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CrxScanResult{file=%s,success=%s}", file, isSuccess());
+        }
+    }
+
+    public static final class Builder {
+
+        private CrxParser parser = CrxParser.getDefault();
+        private Executor executor = ForkJoinPool.commonPool();
+        private int maxFilesInFlight = Runtime.getRuntime().availableProcessors() * 2;
+        private Predicate<? super Path> fileFilter = CrxScanner::hasCrxExtension;
+
+        private Builder() {
+        }
+
+        public Builder parser(CrxParser val) {
+            parser = requireNonNull(val);
+            return this;
+        }
+
+        /**
+         * Sets the executor on which files are parsed. The default is the common fork-join pool.
+         * @param val the executor
+         * @return this builder
+         */
+        public Builder executor(Executor val) {
+            executor = requireNonNull(val);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of files submitted to the executor and not yet delivered to the callback.
+         * @param val the maximum; must be positive
+         * @return this builder
+         */
+        public Builder maxFilesInFlight(int val) {
+            checkArgument(val > 0, "max files in flight must be positive");
+            maxFilesInFlight = val;
+            return this;
+        }
+
+        /**
+         * Sets the filter applied to regular files found when walking a directory tree.
+         * @param val the filter
+         * @return this builder
+         */
+        public Builder fileFilter(Predicate<? super Path> val) {
+            fileFilter = requireNonNull(val);
+            return this;
+        }
+
+        public CrxScanner build() {
+            return new CrxScanner(this);
+        }
+    }
+}
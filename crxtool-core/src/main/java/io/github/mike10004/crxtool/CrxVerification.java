@@ -0,0 +1,51 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Interface that represents the outcome of verifying the proofs in a CRX file.
+ */
+public interface CrxVerification {
+
+    /**
+     * Gets the result for each proof in the file header, in header order.
+     * @return the proof results
+     */
+    List<ProofResult> proofResults();
+
+    /**
+     * Checks whether the file contains at least one proof and every proof is valid.
+     * @return true if the file is verified
+     */
+    default boolean isVerified() {
+        List<ProofResult> results = proofResults();
+        return !results.isEmpty() && results.stream().allMatch(ProofResult::isValid);
+    }
+
+    /**
+     * Interface that represents the outcome of verifying a single proof.
+     */
+    interface ProofResult {
+
+        /**
+         * Gets the proof that was verified.
+         * @return the proof container
+         */
+        AsymmetricKeyProofContainer proof();
+
+        /**
+         * Checks whether the signature matched the signed data.
+         * @return true if the proof is valid
+         */
+        boolean isValid();
+
+        /**
+         * Gets a description of why the proof is not valid.
+         * @return the message, or null if the proof is valid
+         */
+        @Nullable
+        String message();
+
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.mike10004.crxtool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Interface of a service that verifies the signatures in a Chrome extension file.
+ * All proofs in the file header are checked against the archive in a single pass.
+ */
+public interface CrxVerifier {
+
+    /**
+     * Verifies the proofs of an inventory against an archive.
+     * @param inventory the inventory parsed from the file header
+     * @param archive stream positioned at the beginning of the zip archive; it is read to the end but not closed
+     * @return the verification
+     * @throws IOException if reading from the stream fails
+     */
+    CrxVerification verify(CrxInventory inventory, InputStream archive) throws IOException;
+
+    /**
+     * Parses and verifies a CRX file from a stream.
+     * @param crxInputStream stream positioned at the first byte of the file; it is read to the end but not closed
+     * @return the verification
+     * @throws IOException if reading from the stream fails
+     */
+    CrxVerification verify(InputStream crxInputStream) throws IOException;
+
+    /**
+     * Parses and verifies a CRX file.
+     * @param crxFile the file
+     * @return the verification
+     * @throws IOException if reading from the file fails
+     */
+    CrxVerification verify(Path crxFile) throws IOException;
+
+    /**
+     * Gets a default verifier instance.
+     * @return a verifier
+     */
+    static CrxVerifier getDefault() {
+        return BasicCrxVerifier.getDefaultInstance();
+    }
+
+}
@@ -0,0 +1,216 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+
+/**
+ * Static utility methods for elliptic curve keys. The JDK does not expose the
+ * public key embedded in an encoded private key, so this reads the few DER
+ * structures needed to get at it rather than recomputing it from the private value.
+ */
+class EcKeys {
+
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_BIT_STRING = 0x03;
+    private static final int TAG_OCTET_STRING = 0x04;
+    private static final int TAG_SEQUENCE = 0x30;
+
+    /**
+     * ECPrivateKey {@code publicKey [1] EXPLICIT BIT STRING} (RFC 5915).
+     */
+    private static final int TAG_EC_PUBLIC_KEY = 0xa1;
+
+    /**
+     * OneAsymmetricKey {@code publicKey [1] IMPLICIT BIT STRING} (RFC 5958).
+     */
+    private static final int TAG_PKCS8_PUBLIC_KEY = 0x81;
+
+    private static final int UNCOMPRESSED_POINT = 0x04;
+
+    private static volatile ECParameterSpec p256;
+
+    private EcKeys() {}
+
+    /**
+     * Gets the domain parameters of the curve used for ECDSA signatures in CRX3 files.
+     * @return the parameters
+     * @throws NoSuchAlgorithmException if the curve is not supported
+     */
+    static ECParameterSpec getP256Params() throws NoSuchAlgorithmException {
+        ECParameterSpec params = p256;
+        if (params == null) {
+            try {
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(KeyPairs.EC_CURVE_NAME));
+                params = parameters.getParameterSpec(ECParameterSpec.class);
+            } catch (InvalidParameterSpecException e) {
+                throw new NoSuchAlgorithmException("curve not supported: " + KeyPairs.EC_CURVE_NAME, e);
+            }
+            p256 = params;
+        }
+        return params;
+    }
+
+    /**
+     * Checks whether domain parameters describe the P-256 curve. The curve,
+     * generator, order, and cofactor are compared, so an explicitly encoded
+     * curve that merely shares the name is not accepted unless it is identical.
+     * @param params the parameters
+     * @return true if the parameters are those of P-256
+     * @throws NoSuchAlgorithmException if the curve is not supported
+     */
+    static boolean isP256(ECParameterSpec params) throws NoSuchAlgorithmException {
+        ECParameterSpec expected = getP256Params();
+        return expected.getCurve().equals(params.getCurve())
+                && expected.getGenerator().equals(params.getGenerator())
+                && expected.getOrder().equals(params.getOrder())
+                && expected.getCofactor() == params.getCofactor();
+    }
+
+    /**
+     * Reads the public point embedded in a PKCS8-encoded elliptic curve private key.
+     * The point is taken from the {@code publicKey} field of the inner ECPrivateKey
+     * structure or, failing that, from the {@code publicKey} field of a version 2
+     * PrivateKeyInfo structure. Encoders such as OpenSSL write the former; the JDK
+     * writes neither.
+     * @param privateKeyBytes the private key, in PKCS8 format
+     * @param params the domain parameters of the private key
+     * @return the public point, or null if the encoding does not contain one
+     * @throws InvalidKeySpecException if the encoding is malformed
+     */
+    @Nullable
+    static ECPoint readPublicPoint(byte[] privateKeyBytes, ECParameterSpec params) throws InvalidKeySpecException {
+        DerReader privateKeyInfo = new DerReader(privateKeyBytes).enter(TAG_SEQUENCE);
+        privateKeyInfo.skip(TAG_INTEGER);
+        privateKeyInfo.skip(TAG_SEQUENCE);
+        DerReader ecPrivateKey = new DerReader(privateKeyInfo.read(TAG_OCTET_STRING)).enter(TAG_SEQUENCE);
+        ecPrivateKey.skip(TAG_INTEGER);
+        ecPrivateKey.skip(TAG_OCTET_STRING);
+        byte[] bitString = null;
+        while (bitString == null && ecPrivateKey.hasRemaining()) {
+            if (ecPrivateKey.peekTag() == TAG_EC_PUBLIC_KEY) {
+                bitString = ecPrivateKey.enter(TAG_EC_PUBLIC_KEY).read(TAG_BIT_STRING);
+            } else {
+                ecPrivateKey.skip(ecPrivateKey.peekTag());
+            }
+        }
+        while (bitString == null && privateKeyInfo.hasRemaining()) {
+            if (privateKeyInfo.peekTag() == TAG_PKCS8_PUBLIC_KEY) {
+                bitString = privateKeyInfo.read(TAG_PKCS8_PUBLIC_KEY);
+            } else {
+                privateKeyInfo.skip(privateKeyInfo.peekTag());
+            }
+        }
+        if (bitString == null) {
+            return null;
+        }
+        return decodePoint(bitString, params);
+    }
+
+    private static ECPoint decodePoint(byte[] bitString, ECParameterSpec params) throws InvalidKeySpecException {
+        if (bitString.length < 2 || bitString[0] != 0) {
+            throw new InvalidKeySpecException("malformed public key bit string");
+        }
+        if (bitString[1] != UNCOMPRESSED_POINT) {
+            throw new InvalidKeySpecException("only uncompressed public key points are supported");
+        }
+        int coordinateLength = (params.getCurve().getField().getFieldSize() + 7) / 8;
+        if (bitString.length != 2 + 2 * coordinateLength) {
+            throw new InvalidKeySpecException("public key point has wrong length for curve: " + (bitString.length - 1));
+        }
+        int xStart = 2, yStart = xStart + coordinateLength;
+        BigInteger x = new BigInteger(1, Arrays.copyOfRange(bitString, xStart, yStart));
+        BigInteger y = new BigInteger(1, Arrays.copyOfRange(bitString, yStart, bitString.length));
+        return new ECPoint(x, y);
+    }
+
+    /**
+     * Reader of a run of DER-encoded values. Only single-byte tags and definite
+     * lengths are supported, which is all that key structures use.
+     */
+    private static class DerReader {
+
+        private final byte[] data;
+        private int position;
+        private final int end;
+
+        public DerReader(byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        private DerReader(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        public boolean hasRemaining() {
+            return position < end;
+        }
+
+        public int peekTag() throws InvalidKeySpecException {
+            if (!hasRemaining()) {
+                throw new InvalidKeySpecException("truncated DER encoding");
+            }
+            return data[position] & 0xff;
+        }
+
+        /**
+         * Consumes a value and returns a reader of its contents.
+         */
+        public DerReader enter(int tag) throws InvalidKeySpecException {
+            int length = readHeader(tag);
+            DerReader contents = new DerReader(data, position, position + length);
+            position += length;
+            return contents;
+        }
+
+        /**
+         * Consumes a value and returns a copy of its contents.
+         */
+        public byte[] read(int tag) throws InvalidKeySpecException {
+            int length = readHeader(tag);
+            byte[] contents = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return contents;
+        }
+
+        public void skip(int tag) throws InvalidKeySpecException {
+            int length = readHeader(tag);
+            position += length;
+        }
+
+        private int readHeader(int tag) throws InvalidKeySpecException {
+            if (peekTag() != tag) {
+                throw new InvalidKeySpecException(String.format("expected DER tag 0x%02x but found 0x%02x", tag, peekTag()));
+            }
+            position++;
+            if (!hasRemaining()) {
+                throw new InvalidKeySpecException("truncated DER encoding");
+            }
+            int length = data[position++] & 0xff;
+            if (length >= 0x80) {
+                int lengthBytes = length & 0x7f;
+                if (lengthBytes == 0 || lengthBytes > 3 || end - position < lengthBytes) {
+                    throw new InvalidKeySpecException("unsupported DER length encoding");
+                }
+                length = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (data[position++] & 0xff);
+                }
+            }
+            if (length > end - position) {
+                throw new InvalidKeySpecException("truncated DER encoding");
+            }
+            return length;
+        }
+    }
+}
@@ -5,6 +5,9 @@ import com.google.common.io.ByteStreams;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 
 /**
  * Class that represents an input stream source.
@@ -46,8 +49,30 @@ public interface InputSource {
         }
     }
 
+    /**
+     * Copies all bytes from this source to the given channel.
+     * @param channel the destination
+     * @return the number of bytes copied
+     * @throws IOException on I/O error
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    default long copyTo(WritableByteChannel channel) throws IOException {
+        try (InputStream in = openStream()) {
+            return ByteStreams.copy(Channels.newChannel(in), channel);
+        }
+    }
+
     static InputSource wrap(byte[] data) {
         return new InputSources.BufferedInputSource(data);
     }
 
+    /**
+     * Returns an input source that reads a file through a {@link java.nio.channels.FileChannel}.
+     * @param file the file
+     * @return a new input source
+     */
+    static InputSource fromFile(Path file) {
+        return new InputSources.FileInputSource(file);
+    }
+
 }
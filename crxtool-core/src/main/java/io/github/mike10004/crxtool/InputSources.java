@@ -1,8 +1,18 @@
 package io.github.mike10004.crxtool;
 
+import com.google.common.io.ByteStreams;
+
 import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import static java.util.Objects.requireNonNull;
@@ -29,9 +39,71 @@ class InputSources {
             return Arrays.copyOf(data, data.length);
         }
 
+        @Override
+        public long copyTo(WritableByteChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return data.length;
+        }
+
         @Override
         public String toString() {
             return String.format("BufferedInputSource{data[%d]}", data.length);
         }
     }
+
+    public static class FileInputSource implements InputSource {
+
+        private final Path file;
+
+        public FileInputSource(Path file) {
+            this.file = requireNonNull(file);
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            return java.nio.file.Files.readAllBytes(file);
+        }
+
+        /**
+         * Copies the file to an output stream. If the output stream is a
+         * {@link FileOutputStream}, the bytes are transferred between
+         * channels, which allows the operating system to avoid copying
+         * them through user space.
+         */
+        @Override
+        public long copyTo(OutputStream out) throws IOException {
+            if (out instanceof FileOutputStream) {
+                out.flush();
+                return copyTo(((FileOutputStream) out).getChannel());
+            }
+            return InputSource.super.copyTo(out);
+        }
+
+        /**
+         * Copies the file to a channel with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+         */
+        @Override
+        public long copyTo(WritableByteChannel channel) throws IOException {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ByteStreams.copy(in, channel);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("FileInputSource{file=%s}", file);
+        }
+    }
 }
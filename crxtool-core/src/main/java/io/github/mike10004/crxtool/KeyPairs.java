@@ -6,6 +6,9 @@ import com.google.common.io.ByteStreams;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -13,11 +16,22 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Static utility methods relating to key pairs.
@@ -28,9 +42,29 @@ public class KeyPairs {
 
     private KeyPairs() {}
 
+    private static final ThreadLocal<Map<String, KeyFactory>> keyFactories = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Gets a key factory for an algorithm. Key factories are not documented to be
+     * thread-safe, so each thread gets its own, which is reused on subsequent calls
+     * to avoid repeating the provider lookup.
+     * @param algorithm the key algorithm, e.g. RSA or EC
+     * @return the calling thread's key factory for the algorithm
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    static KeyFactory getKeyFactory(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, KeyFactory> threadKeyFactories = keyFactories.get();
+        KeyFactory keyFactory = threadKeyFactories.get(algorithm);
+        if (keyFactory == null) {
+            keyFactory = KeyFactory.getInstance(algorithm);
+            threadKeyFactories.put(algorithm, keyFactory);
+        }
+        return keyFactory;
+    }
+
     public static PrivateKey loadRsaPrivateKeyFromKeyBytes(byte[] privateKeyBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
         PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        KeyFactory keyFactory = getKeyFactory("RSA");
         return keyFactory.generatePrivate(keySpec);
     }
 
@@ -52,7 +86,7 @@ public class KeyPairs {
     static PublicKey extractPublicKey(PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeySpecException {
         RSAPrivateCrtKey privk = (RSAPrivateCrtKey)privateKey;
         RSAPublicKeySpec publicKeySpec = new java.security.spec.RSAPublicKeySpec(privk.getModulus(), privk.getPublicExponent());
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        KeyFactory keyFactory = getKeyFactory("RSA");
         PublicKey publicKey = keyFactory.generatePublic(publicKeySpec);
         return publicKey;
     }
@@ -65,6 +99,129 @@ public class KeyPairs {
         return keyGen.generateKeyPair();
     }
 
+    /**
+     * Name of the elliptic curve used for ECDSA signatures in CRX3 files.
+     */
+    static final String EC_CURVE_NAME = "secp256r1";
+
+    /**
+     * Loads an elliptic curve private key on the P-256 curve from a byte array.
+     * @param privateKeyBytes the private key bytes, in PKCS8 format
+     * @return the private key
+     * @throws NoSuchAlgorithmException if EC is not supported
+     * @throws InvalidKeySpecException if thrown by {@link KeyFactory#generatePrivate(KeySpec)} on a {@link PKCS8EncodedKeySpec} instance
+     * or if the key is not on the P-256 curve
+     */
+    public static PrivateKey loadEcPrivateKeyFromKeyBytes(byte[] privateKeyBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
+        KeyFactory keyFactory = getKeyFactory("EC");
+        PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
+        checkP256(((ECPrivateKey) privateKey).getParams());
+        return privateKey;
+    }
+
+    /**
+     * Loads an elliptic curve key pair from a byte array that constitutes the private key.
+     * The public key is read from the encoding, which must include it, as keys written
+     * by OpenSSL do; keys encoded by the JDK do not, and must be loaded with
+     * {@link #loadEcKeyPair(byte[], byte[])} instead.
+     * @param privateKeyBytes the private key bytes, in PKCS8 format
+     * @return the key pair
+     * @throws NoSuchAlgorithmException if EC is not supported
+     * @throws InvalidKeySpecException if the bytes are not a valid P-256 private key
+     * or do not include a public key that matches it
+     */
+    public static KeyPair loadEcKeyPairFromPrivateKeyBytes(byte[] privateKeyBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        ECPrivateKey privateKey = (ECPrivateKey) loadEcPrivateKeyFromKeyBytes(privateKeyBytes);
+        ECPoint w = EcKeys.readPublicPoint(privateKeyBytes, privateKey.getParams());
+        if (w == null) {
+            throw new InvalidKeySpecException("private key encoding does not include the public key");
+        }
+        PublicKey publicKey = getKeyFactory("EC").generatePublic(new ECPublicKeySpec(w, privateKey.getParams()));
+        checkEcKeysMatch(publicKey, privateKey);
+        return new KeyPair(publicKey, privateKey);
+    }
+
+    /**
+     * Loads an elliptic curve key pair from separately encoded private and public keys.
+     * @param privateKeyBytes the private key bytes, in PKCS8 format
+     * @param publicKeyBytes the public key bytes, in X.509 format
+     * @return the key pair
+     * @throws NoSuchAlgorithmException if EC is not supported
+     * @throws InvalidKeySpecException if the keys are not valid P-256 keys or do not match
+     */
+    public static KeyPair loadEcKeyPair(byte[] privateKeyBytes, byte[] publicKeyBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        PrivateKey privateKey = loadEcPrivateKeyFromKeyBytes(privateKeyBytes);
+        PublicKey publicKey = getKeyFactory("EC").generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+        checkP256(((ECPublicKey) publicKey).getParams());
+        checkEcKeysMatch(publicKey, privateKey);
+        return new KeyPair(publicKey, privateKey);
+    }
+
+    private static void checkP256(ECParameterSpec params) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        if (!EcKeys.isP256(params)) {
+            throw new InvalidKeySpecException("EC key is not on curve " + EC_CURVE_NAME);
+        }
+    }
+
+    /**
+     * Checks that a public key belongs to a private key by signing and verifying
+     * a message, which leaves the arithmetic to the provider.
+     */
+    private static void checkEcKeysMatch(PublicKey publicKey, PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        byte[] message = EC_CURVE_NAME.getBytes(StandardCharsets.US_ASCII);
+        try {
+            Signature signature = Signature.getInstance(Crx3ProofAlgorithm.sha256_with_ecdsa.javaSignatureAlgorithm());
+            signature.initSign(privateKey);
+            signature.update(message);
+            byte[] signed = signature.sign();
+            signature.initVerify(publicKey);
+            signature.update(message);
+            if (!signature.verify(signed)) {
+                throw new InvalidKeySpecException("public key does not match private key");
+            }
+        } catch (InvalidKeyException | SignatureException e) {
+            throw new InvalidKeySpecException("public key does not match private key", e);
+        }
+    }
+
+    /**
+     * Loads an RSA or elliptic curve key pair from a byte array that constitutes the private key.
+     * @param privateKeyBytes the private key bytes, in PKCS8 format
+     * @return the key pair
+     * @throws NoSuchAlgorithmException if the key algorithm is not supported
+     * @throws InvalidKeySpecException if the bytes are not a valid RSA or EC private key
+     */
+    public static KeyPair loadKeyPairFromPrivateKeyBytes(byte[] privateKeyBytes) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        try {
+            return loadRsaKeyPairFromPrivateKeyBytes(privateKeyBytes);
+        } catch (InvalidKeySpecException rsaException) {
+            try {
+                return loadEcKeyPairFromPrivateKeyBytes(privateKeyBytes);
+            } catch (InvalidKeySpecException | RuntimeException ecException) {
+                rsaException.addSuppressed(ecException);
+                throw rsaException;
+            }
+        }
+    }
+
+    /**
+     * Generates an elliptic curve key pair on the P-256 curve, suitable for
+     * {@code sha256_with_ecdsa} proofs in CRX3 files.
+     * @param random source of randomness
+     * @return a new key pair
+     * @throws NoSuchAlgorithmException if EC is not supported
+     */
+    public static KeyPair generateEcKeyPair(SecureRandom random) throws NoSuchAlgorithmException {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        try {
+            keyGen.initialize(new ECGenParameterSpec(EC_CURVE_NAME), random);
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new NoSuchAlgorithmException("curve not supported: " + EC_CURVE_NAME, e);
+        }
+        return keyGen.generateKeyPair();
+    }
+
     static long countBase64EncodedBytes(String base64) {
         long len;
         try (StringReader reader = new StringReader(base64)) {
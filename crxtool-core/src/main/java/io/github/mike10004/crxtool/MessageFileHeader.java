@@ -2,6 +2,7 @@ package io.github.mike10004.crxtool;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
 import io.github.mike10004.crxtool.message.Crx3;
 
 import java.util.Arrays;
@@ -48,6 +49,22 @@ class MessageFileHeader implements CrxFileHeader {
         return BasicAsymmetricKeyProof.fromMessage(source);
     }
 
+    /**
+     * Gets the serialized signed header data, which is covered by every proof.
+     * @return the signed header data, possibly empty
+     */
+    ByteString getSignedHeaderData() {
+        return message.getSignedHeaderData();
+    }
+
+    /**
+     * Gets the serialized form of this header, as it appears in a CRX file.
+     * @return a new byte array
+     */
+    byte[] toByteArray() {
+        return message.toByteArray();
+    }
+
     @Override
     public int numBytes() {
         return message.getSerializedSize();
@@ -0,0 +1,275 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Zips a directory by compressing entries concurrently and writing them in order.
+ * Entries are produced in the same order as by {@link ZippingFileVisitor},
+ * or in name order if the configuration is deterministic.
+ * At most a fixed number of entries are in flight at any time, and the sizes of the
+ * in-flight entries that are buffered in memory add up to at most a fixed number of bytes.
+ * Entries larger than that are compressed to temporary files instead.
+ */
+class ParallelZipping {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    /**
+     * Default maximum total size of the in-flight entries that are buffered in memory.
+     */
+    static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 64L * 1024 * 1024;
+
+    private final Executor executor;
+    private final int maxEntriesInFlight;
+    private final long maxBytesInFlight;
+
+    /**
+     * Constructs an instance.
+     * @param executor executor that compresses entries
+     * @param maxEntriesInFlight maximum number of entries being compressed or awaiting writing
+     * @param maxBytesInFlight maximum total size of in-flight entries buffered in memory;
+     *                         files larger than this are compressed to temporary files
+     */
+    public ParallelZipping(Executor executor, int maxEntriesInFlight, long maxBytesInFlight) {
+        checkArgument(maxEntriesInFlight > 0, "max entries in flight must be positive");
+        checkArgument(maxBytesInFlight > 0, "max bytes in flight must be positive");
+        this.executor = requireNonNull(executor);
+        this.maxEntriesInFlight = maxEntriesInFlight;
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+
+    public void zipDirectory(Path directory, @Nullable ZipConfig zipConfig, OutputStream output) throws IOException {
+        int method = ZipEntry.DEFLATED, level = Deflater.DEFAULT_COMPRESSION;
+        ZipWriter writer = new ZipWriter(output);
+        if (zipConfig != null) {
+            if (zipConfig.method != null) {
+                method = zipConfig.method;
+            }
+            if (zipConfig.level != null) {
+                level = zipConfig.level;
+            }
+            writer.setComment(zipConfig.comment);
+        }
+        boolean deterministic = zipConfig != null && zipConfig.deterministic;
+        long dosTime = deterministic ? ZipWriter.DETERMINISTIC_DOS_TIME : ZipWriter.toDosTime(System.currentTimeMillis());
+        List<Source> sources = collectSources(directory, method, level, dosTime);
+        if (deterministic) {
+            sources.sort(Comparator.comparing(source -> source.entryName));
+        }
+        Deque<Pending> pending = new ArrayDeque<>(maxEntriesInFlight);
+        long bytesInFlight = 0;
+        int next = 0;
+        try {
+            while (next < sources.size() || !pending.isEmpty()) {
+                while (next < sources.size() && pending.size() < maxEntriesInFlight) {
+                    Source source = sources.get(next);
+                    boolean spill = source.sizeHint > maxBytesInFlight;
+                    long cost = spill ? 0 : source.sizeHint;
+                    if (!pending.isEmpty() && bytesInFlight + cost > maxBytesInFlight) {
+                        break;
+                    }
+                    Path spillFile = spill ? java.nio.file.Files.createTempFile("crxtool-entry", ".tmp") : null;
+                    pending.add(new Pending(CompletableFuture.supplyAsync(() -> source.compressUnchecked(spillFile), executor), cost, spillFile));
+                    bytesInFlight += cost;
+                    next++;
+                }
+                Pending head = pending.remove();
+                try {
+                    writer.write(await(head.future));
+                } finally {
+                    head.discard();
+                }
+                bytesInFlight -= head.cost;
+            }
+        } finally {
+            for (Pending p : pending) {
+                p.future.cancel(true);
+                p.discard();
+            }
+        }
+        writer.finish();
+    }
+
+    private static ZipWriter.Entry await(CompletableFuture<ZipWriter.Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while compressing zip entries");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static List<Source> collectSources(Path directory, int method, int level, long dosTime) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        java.nio.file.Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.toFile().getAbsoluteFile().equals(directory.toFile().getAbsoluteFile())) {
+                    sources.add(new Source(ZippingFileVisitor.entryName(directory, dir) + "/", null, 0, method, level, dosTime));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                sources.add(new Source(ZippingFileVisitor.entryName(directory, file), file, attrs.size(), method, level, dosTime));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sources;
+    }
+
+    /**
+     * Reads and compresses a file into an entry whose data is held in memory.
+     * @param entryName the entry name
+     * @param file the file
+     * @param sizeHint expected file size, used to size the buffer
+     * @param method compression method
+     * @param level deflate compression level
+     * @param dosTime modification time in MS-DOS format
+     * @return the entry
+     * @throws IOException on I/O error
+     */
+    static ZipWriter.Entry compress(String entryName, Path file, long sizeHint, int method, int level, long dosTime) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(32, Ints.saturatedCast(sizeHint)));
+        long size = compress(file, method, level, crc, buffer);
+        byte[] data = buffer.toByteArray();
+        return new ZipWriter.Entry(entryName, method, crc.getValue(), data.length, size, dosTime, InputSource.wrap(data));
+    }
+
+    /**
+     * Reads and compresses a file into an entry whose data is held in a temporary file.
+     * The caller is responsible for deleting the temporary file after the entry is written.
+     * @param entryName the entry name
+     * @param file the file
+     * @param method compression method
+     * @param level deflate compression level
+     * @param dosTime modification time in MS-DOS format
+     * @param spillFile the temporary file; truncated if it exists
+     * @return the entry
+     * @throws IOException on I/O error
+     */
+    static ZipWriter.Entry compress(String entryName, Path file, int method, int level, long dosTime, Path spillFile) throws IOException {
+        CRC32 crc = new CRC32();
+        long size;
+        try (OutputStream output = new BufferedOutputStream(java.nio.file.Files.newOutputStream(spillFile))) {
+            size = compress(file, method, level, crc, output);
+        }
+        return new ZipWriter.Entry(entryName, method, crc.getValue(), java.nio.file.Files.size(spillFile), size, dosTime, InputSource.fromFile(spillFile));
+    }
+
+    private static long compress(Path file, int method, int level, CRC32 crc, OutputStream destination) throws IOException {
+        try (InputStream in = new CheckedInputStream(java.nio.file.Files.newInputStream(file), crc)) {
+            if (method == ZipEntry.STORED) {
+                return ByteStreams.copy(in, destination);
+            }
+            Deflater deflater = new Deflater(level, true);
+            DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(destination, deflater, COPY_BUFFER_SIZE);
+            try {
+                long size = ByteStreams.copy(in, deflaterOutput);
+                deflaterOutput.finish();
+                return size;
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static class Pending {
+
+        public final CompletableFuture<ZipWriter.Entry> future;
+        public final long cost;
+        @Nullable
+        private final Path spillFile;
+
+        private Pending(CompletableFuture<ZipWriter.Entry> future, long cost, @Nullable Path spillFile) {
+            this.future = future;
+            this.cost = cost;
+            this.spillFile = spillFile;
+        }
+
+        public void discard() throws IOException {
+            if (spillFile != null) {
+                java.nio.file.Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    private static class Source {
+
+        public final String entryName;
+        @Nullable
+        public final Path file;
+        public final long sizeHint;
+        public final int method;
+        public final int level;
+        public final long dosTime;
+
+        private Source(String entryName, @Nullable Path file, long sizeHint, int method, int level, long dosTime) {
+            this.entryName = entryName;
+            this.file = file;
+            this.sizeHint = sizeHint;
+            this.method = method;
+            this.level = level;
+            this.dosTime = dosTime;
+        }
+
+        public ZipWriter.Entry compressUnchecked(@Nullable Path spillFile) {
+            try {
+                return compress(spillFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public ZipWriter.Entry compress(@Nullable Path spillFile) throws IOException {
+            if (file == null) {
+                return ZipWriter.Entry.directory(entryName, dosTime);
+            }
+            if (spillFile != null) {
+                return ParallelZipping.compress(entryName, file, method, level, dosTime, spillFile);
+            }
+            return ParallelZipping.compress(entryName, file, sizeHint, method, level, dosTime);
+        }
+    }
+}
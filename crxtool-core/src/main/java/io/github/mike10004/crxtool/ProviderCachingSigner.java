@@ -0,0 +1,55 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Signature;
+
+/**
+ * Signer that looks up the provider of its signature algorithm once instead of for every signature.
+ * Each signing operation gets a new signature object from the cached provider, so signature
+ * objects are never shared and private keys are not retained after signing. If the cached
+ * provider rejects a key, a provider for that key is looked up as by {@link BasicSigner}.
+ * Instances are safe for use by multiple threads.
+ */
+class ProviderCachingSigner extends BasicSigner {
+
+    @Nullable
+    private volatile Provider provider;
+
+    public ProviderCachingSigner(String hashFunction, String cryptoAlgorithm) {
+        this(hashFunction, cryptoAlgorithm, null);
+    }
+
+    public ProviderCachingSigner(String hashFunction, String cryptoAlgorithm, @Nullable SecureRandom rng) {
+        super(hashFunction, cryptoAlgorithm, rng);
+    }
+
+    @Override
+    public Signature initSign(PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException {
+        Provider provider = this.provider;
+        if (provider == null) {
+            provider = lookUpProvider();
+            this.provider = provider;
+        }
+        Signature signature = Signature.getInstance(getSignatureAlgorithm(), provider);
+        try {
+            initSign(signature, privateKey);
+        } catch (InvalidKeyException e) {
+            return super.initSign(privateKey);
+        }
+        return signature;
+    }
+
+    /**
+     * Looks up the provider of the signature algorithm.
+     * @return the provider
+     * @throws NoSuchAlgorithmException if no provider supports the algorithm
+     */
+    Provider lookUpProvider() throws NoSuchAlgorithmException {
+        return Signature.getInstance(getSignatureAlgorithm()).getProvider();
+    }
+}
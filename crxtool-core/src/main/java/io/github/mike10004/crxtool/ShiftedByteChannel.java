@@ -0,0 +1,171 @@
+package io.github.mike10004.crxtool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Read-only channel over the portion of a file that begins at a fixed offset.
+ * Positions are relative to that offset. All reads are positional reads on the
+ * underlying file channel, so any number of instances may share one file channel,
+ * and closing an instance does not close the file channel.
+ */
+class ShiftedByteChannel implements SeekableByteChannel {
+
+    private final FileChannel file;
+    private final long offset;
+    private long position;
+    private boolean open;
+
+    public ShiftedByteChannel(FileChannel file, long offset) {
+        checkArgument(offset >= 0, "offset must be nonnegative");
+        this.file = requireNonNull(file);
+        this.offset = offset;
+        open = true;
+    }
+
+    /**
+     * Reads bytes at a position without changing this channel's position.
+     * @param dst the destination buffer
+     * @param position position relative to the offset
+     * @return the number of bytes read, or -1 at end of channel
+     * @throws IOException on I/O error
+     */
+    public int read(ByteBuffer dst, long position) throws IOException {
+        checkArgument(position >= 0, "position must be nonnegative");
+        return file.read(dst, offset + position);
+    }
+
+    /**
+     * Reads bytes at a position until the buffer is full.
+     * @param dst the destination buffer
+     * @param position position relative to the offset
+     * @throws EOFException if the end of the channel is reached first
+     * @throws IOException on I/O error
+     */
+    public void readFully(ByteBuffer dst, long position) throws IOException {
+        checkArgument(position >= 0, "position must be nonnegative");
+        ByteBuffers.readFully(file, dst, offset + position);
+    }
+
+    /**
+     * Returns a stream that reads a range of this channel using positional reads.
+     * @param position start of the range, relative to the offset
+     * @param length length of the range
+     * @return a new input stream
+     */
+    public InputStream newInputStream(long position, long length) {
+        return new RangeInputStream(position, length);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        int n = read(dst, position);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        checkOpen();
+        checkArgument(newPosition >= 0, "position must be nonnegative");
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        return Math.max(0, file.size() - offset);
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && file.isOpen();
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private class RangeInputStream extends InputStream {
+
+        private long position;
+        private final long end;
+
+        public RangeInputStream(long position, long length) {
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long remaining = end - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            ByteBuffer dst = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int n = ShiftedByteChannel.this.read(dst, position);
+            if (n < 0) {
+                throw new EOFException("end of channel reached before end of range");
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+}
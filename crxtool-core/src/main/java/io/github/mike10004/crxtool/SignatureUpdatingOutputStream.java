@@ -0,0 +1,43 @@
+package io.github.mike10004.crxtool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output stream that updates any number of signatures with every byte written to it.
+ * This allows a single pass over the signed data to feed several proofs.
+ */
+class SignatureUpdatingOutputStream extends OutputStream {
+
+    private final List<Signature> signatures;
+
+    public SignatureUpdatingOutputStream(List<Signature> signatures) {
+        this.signatures = new ArrayList<>(signatures);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        try {
+            for (Signature signature : signatures) {
+                signature.update((byte) b);
+            }
+        } catch (SignatureException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        try {
+            for (Signature signature : signatures) {
+                signature.update(b, off, len);
+            }
+        } catch (SignatureException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -1,10 +1,44 @@
 package io.github.mike10004.crxtool;
 
+import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
+import java.security.Signature;
 import java.security.SignatureException;
 
 public interface Signer {
+
+    /**
+     * Creates a signature object initialized for signing with a private key,
+     * so that data may be supplied incrementally, possibly alongside other signatures.
+     * The default implementation returns a signature object that collects the data
+     * in memory and signs it with {@link #sign(byte[], PrivateKey)}; implementations
+     * should override this to update a signature incrementally.
+     * @param privateKey the private key
+     * @return a new signature object
+     * @throws NoSuchAlgorithmException if the signature algorithm is not supported
+     * @throws InvalidKeyException if the key is invalid
+     */
+    default Signature initSign(PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException {
+        return new BufferingSignature(this, privateKey);
+    }
+
     byte[] sign(byte[] input, PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException;
+
+    /**
+     * Signs the bytes supplied by an input source. The default implementation
+     * reads the entire source into memory; implementations should override this
+     * to update the signature incrementally.
+     * @param input the input source
+     * @param privateKey the private key
+     * @return the signature
+     * @throws IOException on I/O error
+     * @throws NoSuchAlgorithmException if the signature algorithm is not supported
+     * @throws InvalidKeyException if the key is invalid
+     * @throws SignatureException on signature error
+     */
+    default byte[] sign(InputSource input, PrivateKey privateKey) throws IOException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        return sign(input.read(), privateKey);
+    }
 }
@@ -3,6 +3,7 @@ package io.github.mike10004.crxtool;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.CountingInputStream;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.LongSupplier;
@@ -24,6 +25,10 @@ class StreamParsingState implements ParsingState {
         return new StreamParsingState(in::getCount);
     }
 
+    public static StreamParsingState fromBuffer(ByteBuffer buffer) {
+        return new StreamParsingState(buffer::position);
+    }
+
     private static class PartialMark {
 
         public final String label;
@@ -0,0 +1,341 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Random-access reader of a zip archive that begins at an offset within a file.
+ * The central directory is read when the archive is opened, and entry data is
+ * read on demand by seeking to the entry's local header.
+ *
+ * <p>Entry input streams use positional reads, so several may be open at once,
+ * including from different threads. Zip64 archives are not supported.
+ */
+class ZipArchive implements Closeable {
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_FILE_HEADER_LEN = 30;
+    private static final int CENTRAL_DIRECTORY_HEADER_LEN = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_LEN = 22;
+    private static final int MAX_COMMENT_LEN = 0xFFFF;
+    private static final int FLAG_ENCRYPTED = 0x0001;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final FileChannel file;
+    private final long archiveOffset;
+    private final ShiftedByteChannel archive;
+    private final Map<String, CentralEntry> entries;
+    @Nullable
+    private final String comment;
+
+    /**
+     * Constructs an instance. The file channel is closed when this instance is closed.
+     * @param file the file channel
+     * @param archiveOffset position in the file of the first byte of the archive
+     * @throws IOException if the central directory is malformed or reading fails
+     */
+    public ZipArchive(FileChannel file, long archiveOffset) throws IOException {
+        this.file = requireNonNull(file);
+        this.archiveOffset = archiveOffset;
+        archive = new ShiftedByteChannel(file, archiveOffset);
+        ByteBuffer eocd = findEndOfCentralDirectory(archive);
+        long eocdPosition = eocd.getLong(eocd.limit() - Long.BYTES);
+        int totalEntries = eocd.getShort(10) & 0xFFFF;
+        long centralDirectorySize = eocd.getInt(12) & 0xFFFFFFFFL;
+        long centralDirectoryOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+        int commentLength = eocd.getShort(20) & 0xFFFF;
+        byte[] commentBytes = new byte[commentLength];
+        ByteBuffer commentView = eocd.duplicate();
+        ((Buffer) commentView).position(END_OF_CENTRAL_DIRECTORY_LEN);
+        commentView.get(commentBytes);
+        comment = commentLength == 0 ? null : new String(commentBytes, StandardCharsets.UTF_8);
+        long centralDirectoryStart = eocdPosition - centralDirectorySize;
+        if (centralDirectoryStart < 0 || centralDirectoryOffset == 0xFFFFFFFFL || totalEntries == 0xFFFF) {
+            throw new ZipException("invalid central directory or zip64 archive, which is not supported");
+        }
+        // offsets are adjusted by any bytes prepended to the archive, as java.util.zip.ZipFile does
+        long shift = centralDirectoryStart - centralDirectoryOffset;
+        entries = readCentralDirectory(centralDirectoryStart, centralDirectorySize, totalEntries, shift);
+    }
+
+    /**
+     * Opens a zip file, or the archive inside a CRX file.
+     * @param file the zip or CRX file
+     * @return a new archive instance, which must be closed
+     * @throws IOException if the CRX header or central directory is malformed or reading fails
+     */
+    public static ZipArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ZipArchive(channel, findArchiveOffset(file, channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long findArchiveOffset(Path file, FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(CrxPackers.MAGIC_NUMBER.length());
+        if (channel.read(magic, 0) == magic.capacity()
+                && CrxPackers.MAGIC_NUMBER.equals(new String(magic.array(), StandardCharsets.US_ASCII))) {
+            return CrxParser.getDefault().parseHeaderOnly(file).archiveOffset();
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the entries in central directory order.
+     * @return an immutable list of entries
+     */
+    public List<ZipEntry> entries() {
+        return entries.values().stream().map(CentralEntry::toZipEntry).collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Gets an entry by name.
+     * @param name the entry name
+     * @return the entry, or null if not present
+     */
+    @Nullable
+    public ZipEntry getEntry(String name) {
+        CentralEntry entry = entries.get(name);
+        return entry == null ? null : entry.toZipEntry();
+    }
+
+    /**
+     * Gets the archive comment.
+     * @return the comment, or null if absent
+     */
+    @Nullable
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * Opens a stream that supplies the uncompressed data of an entry.
+     * @param entry the entry, as returned by this instance
+     * @return a new input stream
+     * @throws ZipException if the entry is not present, is encrypted, or uses an unsupported method
+     * @throws IOException on I/O error
+     */
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        CentralEntry central = entries.get(entry.getName());
+        if (central == null) {
+            throw new ZipException("entry not present: " + entry.getName());
+        }
+        InputStream raw = openRawData(central);
+        switch (central.method) {
+            case ZipEntry.STORED:
+                return raw;
+            case ZipEntry.DEFLATED:
+                Inflater inflater = new Inflater(true);
+                return new InflaterInputStream(raw, inflater, BUFFER_SIZE) {
+                    private boolean closed;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            inflater.end();
+                            super.close();
+                        }
+                    }
+                };
+            default:
+                raw.close();
+                throw new ZipException(String.format("unsupported method %d for entry %s", central.method, central.name));
+        }
+    }
+
+    /**
+     * Returns a new channel over the archive portion of the file. Position zero of the
+     * channel is the first byte of the archive. The channel is read-only, and closing
+     * it does not close this instance.
+     * @return a new channel
+     */
+    public SeekableByteChannel newArchiveChannel() {
+        return new ShiftedByteChannel(file, archiveOffset);
+    }
+
+    /**
+     * Gets an entry whose data is the entry's stored bytes, which are compressed
+     * if the entry is deflated, so that it may be copied to another archive
+     * without decompressing and recompressing it.
+     * @param name the entry name
+     * @return the entry, or null if not present
+     * @throws ZipException if the entry is encrypted or uses an unsupported method
+     */
+    @Nullable
+    public ZipWriter.Entry getRawEntry(String name) throws ZipException {
+        CentralEntry central = entries.get(name);
+        if (central == null) {
+            return null;
+        }
+        if ((central.flags & FLAG_ENCRYPTED) != 0) {
+            throw new ZipException("encrypted entries are not supported: " + central.name);
+        }
+        if (central.method != ZipEntry.STORED && central.method != ZipEntry.DEFLATED) {
+            throw new ZipException(String.format("unsupported method %d for entry %s", central.method, central.name));
+        }
+        return new ZipWriter.Entry(central.name, central.method, central.crc, central.compressedSize, central.size, central.dosTime, () -> openRawData(central));
+    }
+
+    private InputStream openRawData(CentralEntry entry) throws IOException {
+        if ((entry.flags & FLAG_ENCRYPTED) != 0) {
+            throw new ZipException("encrypted entries are not supported: " + entry.name);
+        }
+        ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_FILE_HEADER_LEN).order(ByteOrder.LITTLE_ENDIAN);
+        archive.readFully(localHeader, entry.localHeaderOffset);
+        if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+            throw new ZipException("invalid local header signature for entry " + entry.name);
+        }
+        int nameLength = localHeader.getShort(26) & 0xFFFF;
+        int extraLength = localHeader.getShort(28) & 0xFFFF;
+        long dataStart = entry.localHeaderOffset + LOCAL_FILE_HEADER_LEN + nameLength + extraLength;
+        return archive.newInputStream(dataStart, entry.compressedSize);
+    }
+
+    private Map<String, CentralEntry> readCentralDirectory(long start, long size, int totalEntries, long shift) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new ZipException("central directory too large: " + size);
+        }
+        ByteBuffer cd = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        archive.readFully(cd, start);
+        ((Buffer) cd).flip();
+        Map<String, CentralEntry> entries = new LinkedHashMap<>(totalEntries * 4 / 3 + 1);
+        for (int i = 0; i < totalEntries; i++) {
+            if (cd.remaining() < CENTRAL_DIRECTORY_HEADER_LEN || cd.getInt(cd.position()) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                throw new ZipException("invalid central directory header at index " + i);
+            }
+            int p = cd.position();
+            int flags = cd.getShort(p + 8) & 0xFFFF;
+            int method = cd.getShort(p + 10) & 0xFFFF;
+            long dosTime = cd.getInt(p + 12) & 0xFFFFFFFFL;
+            long crc = cd.getInt(p + 16) & 0xFFFFFFFFL;
+            long compressedSize = cd.getInt(p + 20) & 0xFFFFFFFFL;
+            long uncompressedSize = cd.getInt(p + 24) & 0xFFFFFFFFL;
+            int nameLength = cd.getShort(p + 28) & 0xFFFF;
+            int extraLength = cd.getShort(p + 30) & 0xFFFF;
+            int commentLength = cd.getShort(p + 32) & 0xFFFF;
+            long localHeaderOffset = cd.getInt(p + 42) & 0xFFFFFFFFL;
+            if (compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                throw new ZipException("zip64 entries are not supported");
+            }
+            ((Buffer) cd).position(p + CENTRAL_DIRECTORY_HEADER_LEN);
+            byte[] name = ByteBuffers.getBytes(cd, nameLength);
+            byte[] extra = ByteBuffers.getBytes(cd, extraLength);
+            byte[] entryComment = ByteBuffers.getBytes(cd, commentLength);
+            CentralEntry entry = new CentralEntry(new String(name, StandardCharsets.UTF_8), flags, method, dosTime, crc,
+                    compressedSize, uncompressedSize, localHeaderOffset + shift,
+                    extraLength == 0 ? null : extra,
+                    commentLength == 0 ? null : new String(entryComment, StandardCharsets.UTF_8));
+            entries.putIfAbsent(entry.name, entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the end of central directory record by scanning backward from the end of the archive.
+     * @return a little-endian buffer containing the record and comment, followed by the 8-byte position of the record
+     */
+    private static ByteBuffer findEndOfCentralDirectory(ShiftedByteChannel archive) throws IOException {
+        long archiveSize = archive.size();
+        if (archiveSize < END_OF_CENTRAL_DIRECTORY_LEN) {
+            throw new ZipException("archive too short: " + archiveSize);
+        }
+        int tailLength = (int) Math.min(archiveSize, END_OF_CENTRAL_DIRECTORY_LEN + MAX_COMMENT_LEN);
+        long tailStart = archiveSize - tailLength;
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        archive.readFully(tail, tailStart);
+        for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_LEN; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                int commentLength = tail.getShort(i + 20) & 0xFFFF;
+                if (i + END_OF_CENTRAL_DIRECTORY_LEN + commentLength == tailLength) {
+                    int recordLength = END_OF_CENTRAL_DIRECTORY_LEN + commentLength;
+                    ByteBuffer record = ByteBuffer.allocate(recordLength + Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                    ByteBuffer recordView = tail.duplicate();
+                    ((Buffer) recordView).position(i).limit(i + recordLength);
+                    record.put(recordView);
+                    record.putLong(tailStart + i);
+                    ((Buffer) record).flip();
+                    return record;
+                }
+            }
+        }
+        throw new ZipException("end of central directory record not found");
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+        file.close();
+    }
+
+    private static class CentralEntry {
+
+        public final String name;
+        public final int flags;
+        public final int method;
+        public final long dosTime;
+        public final long crc;
+        public final long compressedSize;
+        public final long size;
+        public final long localHeaderOffset;
+        @Nullable
+        public final byte[] extra;
+        @Nullable
+        public final String comment;
+
+        public CentralEntry(String name, int flags, int method, long dosTime, long crc, long compressedSize, long size, long localHeaderOffset, @Nullable byte[] extra, @Nullable String comment) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.extra = extra;
+            this.comment = comment;
+        }
+
+        public ZipEntry toZipEntry() {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(ZipWriter.fromDosTime(dosTime));
+            if (method == ZipEntry.STORED || method == ZipEntry.DEFLATED) {
+                entry.setMethod(method);
+            }
+            entry.setCrc(crc);
+            entry.setSize(size);
+            entry.setCompressedSize(compressedSize);
+            if (extra != null) {
+                entry.setExtra(extra.clone());
+            }
+            entry.setComment(comment);
+            return entry;
+        }
+    }
+}
@@ -25,6 +25,15 @@ public class ZipConfig {
     @Nullable
     public final String comment;
 
+    /**
+     * Flag that specifies whether the archive is to be reproducible. If true, entries
+     * are written in name order, every entry has the same fixed timestamp, and no
+     * file attributes or extra fields are recorded, so the same directory contents
+     * always produce the same archive bytes. The sequential and parallel zipping methods
+     * are each reproducible, but their archives differ from each other.
+     */
+    public final boolean deterministic;
+
     /**
      * Constructs an instance of the class.
      * @param method the compression method
@@ -35,9 +44,31 @@ public class ZipConfig {
      * @see #comment
      */
     public ZipConfig(@Nullable Integer method, @Nullable Integer level, @Nullable String comment) {
+        this(method, level, comment, false);
+    }
+
+    /**
+     * Constructs an instance of the class.
+     * @param method the compression method
+     * @param level the compression
+     * @param comment a comment
+     * @param deterministic whether the archive is to be reproducible
+     * @see #deterministic
+     */
+    public ZipConfig(@Nullable Integer method, @Nullable Integer level, @Nullable String comment, boolean deterministic) {
         this.method = method;
         this.level = level;
         this.comment = comment;
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Returns a configuration for reproducible archives with the default method and level.
+     * @return a new instance
+     * @see #deterministic
+     */
+    public static ZipConfig deterministic() {
+        return new ZipConfig(null, null, null, true);
     }
 
     @Override
@@ -46,6 +77,7 @@ public class ZipConfig {
                 "method=" + method +
                 ", level=" + level +
                 ", comment='" + comment + '\'' +
+                ", deterministic=" + deterministic +
                 '}';
     }
 
@@ -56,11 +88,12 @@ public class ZipConfig {
         ZipConfig zipConfig = (ZipConfig) o;
         return Objects.equals(method, zipConfig.method) &&
                 Objects.equals(level, zipConfig.level) &&
-                Objects.equals(comment, zipConfig.comment);
+                Objects.equals(comment, zipConfig.comment) &&
+                deterministic == zipConfig.deterministic;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(method, level, comment);
+        return Objects.hash(method, level, comment, deterministic);
     }
 }
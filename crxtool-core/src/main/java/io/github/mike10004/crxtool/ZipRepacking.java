@@ -0,0 +1,111 @@
+package io.github.mike10004.crxtool;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes a copy of an existing archive in which only changed entries are recompressed.
+ * Unchanged entries are copied as stored, with their compressed bytes, checksums, and
+ * timestamps intact, so no data is inflated or deflated for them. Extra fields and
+ * entry comments of copied entries are not preserved.
+ */
+class ZipRepacking {
+
+    private final Path extensionDir;
+    private final Set<String> changedEntries;
+    private final int method;
+    private final int level;
+    @Nullable
+    private final String comment;
+    private final boolean deterministic;
+
+    public ZipRepacking(Path extensionDir, Set<String> changedEntries, @Nullable ZipConfig zipConfig) {
+        this.extensionDir = requireNonNull(extensionDir);
+        this.changedEntries = new HashSet<>(changedEntries);
+        int method = ZipEntry.DEFLATED, level = Deflater.DEFAULT_COMPRESSION;
+        String comment = null;
+        boolean deterministic = false;
+        if (zipConfig != null) {
+            deterministic = zipConfig.deterministic;
+            if (zipConfig.method != null) {
+                method = zipConfig.method;
+            }
+            if (zipConfig.level != null) {
+                level = zipConfig.level;
+            }
+            comment = zipConfig.comment;
+        }
+        this.method = method;
+        this.level = level;
+        this.comment = comment;
+        this.deterministic = deterministic;
+    }
+
+    public void repack(ZipArchive source, OutputStream output) throws IOException {
+        // reject bad names before anything is written
+        for (String name : changedEntries) {
+            resolveWithinExtensionDir(name);
+        }
+        ZipWriter writer = new ZipWriter(output);
+        writer.setComment(comment == null ? source.getComment() : comment);
+        long dosTime = deterministic ? ZipWriter.DETERMINISTIC_DOS_TIME : ZipWriter.toDosTime(System.currentTimeMillis());
+        Set<String> added = new TreeSet<>(changedEntries);
+        for (ZipEntry entry : source.entries()) {
+            String name = entry.getName();
+            added.remove(name);
+            if (changedEntries.contains(name)) {
+                writeFromDirectory(name, dosTime, writer);
+            } else {
+                writer.write(requireNonNull(source.getRawEntry(name)));
+            }
+        }
+        for (String name : added) {
+            writeFromDirectory(name, dosTime, writer);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Writes an entry from the file in the extension directory,
+     * or nothing if the file has been deleted.
+     */
+    private void writeFromDirectory(String name, long dosTime, ZipWriter writer) throws IOException {
+        Path file = resolveWithinExtensionDir(name);
+        if (!java.nio.file.Files.exists(file)) {
+            return;
+        }
+        BasicFileAttributes attrs = java.nio.file.Files.readAttributes(file, BasicFileAttributes.class);
+        if (attrs.isDirectory()) {
+            writer.write(ZipWriter.Entry.directory(name.endsWith("/") ? name : name + "/", dosTime));
+        } else if (attrs.size() > ParallelZipping.DEFAULT_MAX_BYTES_IN_FLIGHT) {
+            Path spillFile = java.nio.file.Files.createTempFile("crxtool-entry", ".tmp");
+            try {
+                writer.write(ParallelZipping.compress(name, file, method, level, dosTime, spillFile));
+            } finally {
+                java.nio.file.Files.deleteIfExists(spillFile);
+            }
+        } else {
+            writer.write(ParallelZipping.compress(name, file, attrs.size(), method, level, dosTime));
+        }
+    }
+
+    private Path resolveWithinExtensionDir(String name) throws ZipException {
+        Path root = extensionDir.toAbsolutePath().normalize();
+        Path resolved = root.resolve(name).normalize();
+        if (!resolved.startsWith(root) || resolved.equals(root)) {
+            throw new ZipException("entry is outside of extension directory: " + name);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,261 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.LittleEndianDataOutputStream;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writer of zip archives whose entries have already been compressed.
+ * Each entry's data, checksum, and sizes must be known before the entry is written,
+ * so no data descriptors are used. Zip64 archives are not supported.
+ */
+class ZipWriter {
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+    private static final int MAX_UINT16 = 0xFFFF;
+
+    private final CountingOutputStream counter;
+    private final LittleEndianDataOutputStream output;
+    private final List<WrittenEntry> writtenEntries;
+    @Nullable
+    private byte[] comment;
+    private boolean finished;
+
+    /**
+     * Constructs an instance. The output stream is not closed by this writer.
+     * @param output the destination
+     */
+    public ZipWriter(OutputStream output) {
+        this.counter = new CountingOutputStream(requireNonNull(output));
+        this.output = new LittleEndianDataOutputStream(counter);
+        writtenEntries = new ArrayList<>();
+    }
+
+    public void setComment(@Nullable String comment) throws ZipException {
+        byte[] commentBytes = comment == null ? null : comment.getBytes(StandardCharsets.UTF_8);
+        if (commentBytes != null && commentBytes.length > MAX_UINT16) {
+            throw new ZipException("comment too long: " + commentBytes.length);
+        }
+        this.comment = commentBytes;
+    }
+
+    /**
+     * Writes the local file header and data of an entry.
+     * @param entry the entry
+     * @throws IOException on I/O error
+     */
+    public void write(Entry entry) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("already finished");
+        }
+        if (writtenEntries.size() == MAX_UINT16) {
+            throw new ZipException("too many entries; zip64 is not supported");
+        }
+        long offset = counter.getCount();
+        checkUint32(offset, "local header offset");
+        checkUint32(entry.size, "size of entry " + entry.name);
+        checkUint32(entry.compressedSize, "compressed size of entry " + entry.name);
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_UINT16) {
+            throw new ZipException("entry name too long: " + entry.name);
+        }
+        output.writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        output.writeShort(entry.versionNeeded());
+        output.writeShort(FLAG_UTF8);
+        output.writeShort(entry.method);
+        output.writeInt((int) entry.dosTime);
+        output.writeInt((int) entry.crc);
+        output.writeInt((int) entry.compressedSize);
+        output.writeInt((int) entry.size);
+        output.writeShort(name.length);
+        output.writeShort(0);
+        output.write(name);
+        output.flush();
+        long copied = entry.data.copyTo(counter);
+        if (copied != entry.compressedSize) {
+            throw new ZipException(String.format("entry %s data length %d does not match compressed size %d", entry.name, copied, entry.compressedSize));
+        }
+        writtenEntries.add(new WrittenEntry(entry, name, offset));
+    }
+
+    /**
+     * Writes the central directory and end of central directory record.
+     * The underlying stream is flushed but not closed.
+     * @throws IOException on I/O error
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long centralDirectoryOffset = counter.getCount();
+        checkUint32(centralDirectoryOffset, "central directory offset");
+        for (WrittenEntry written : writtenEntries) {
+            Entry entry = written.entry;
+            output.writeInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+            output.writeShort(VERSION_DEFLATED);
+            output.writeShort(entry.versionNeeded());
+            output.writeShort(FLAG_UTF8);
+            output.writeShort(entry.method);
+            output.writeInt((int) entry.dosTime);
+            output.writeInt((int) entry.crc);
+            output.writeInt((int) entry.compressedSize);
+            output.writeInt((int) entry.size);
+            output.writeShort(written.name.length);
+            output.writeShort(0); // extra field length
+            output.writeShort(0); // comment length
+            output.writeShort(0); // disk number start
+            output.writeShort(0); // internal attributes
+            output.writeInt(0); // external attributes
+            output.writeInt((int) written.localHeaderOffset);
+            output.write(written.name);
+        }
+        long centralDirectorySize = counter.getCount() - centralDirectoryOffset;
+        checkUint32(centralDirectorySize, "central directory size");
+        byte[] comment = this.comment == null ? new byte[0] : this.comment;
+        output.writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        output.writeShort(0); // number of this disk
+        output.writeShort(0); // disk where central directory starts
+        output.writeShort(writtenEntries.size());
+        output.writeShort(writtenEntries.size());
+        output.writeInt((int) centralDirectorySize);
+        output.writeInt((int) centralDirectoryOffset);
+        output.writeShort(comment.length);
+        output.write(comment);
+        output.flush();
+    }
+
+    private static void checkUint32(long value, String description) throws ZipException {
+        if (value >= MAX_UINT32) {
+            throw new ZipException(description + " too large; zip64 is not supported");
+        }
+    }
+
+    /**
+     * Timestamp of every entry in a deterministic archive, in MS-DOS format.
+     * This is 1980-02-01 00:00, which is the earliest date that is representable
+     * in every time zone when converted to a Java timestamp and back.
+     */
+    static final long DETERMINISTIC_DOS_TIME = toDosTime(LocalDateTime.of(1980, 2, 1, 0, 0));
+
+    /**
+     * Converts a Java timestamp to an MS-DOS date and time in the system default time zone,
+     * as {@link ZipEntry#setTime(long)} does.
+     * @param javaTime milliseconds since the epoch
+     * @return the DOS date in the upper 16 bits and the DOS time in the lower 16 bits
+     */
+    static long toDosTime(long javaTime) {
+        LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(javaTime), ZoneId.systemDefault());
+        return toDosTime(t);
+    }
+
+    static long toDosTime(LocalDateTime t) {
+        if (t.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (t.getYear() - 1980) << 25)
+                | ((long) t.getMonthValue() << 21)
+                | ((long) t.getDayOfMonth() << 16)
+                | ((long) t.getHour() << 11)
+                | ((long) t.getMinute() << 5)
+                | ((long) t.getSecond() >> 1);
+    }
+
+    /**
+     * Converts an MS-DOS date and time to a Java timestamp in the system default time zone.
+     * @param dosTime the DOS date in the upper 16 bits and the DOS time in the lower 16 bits
+     * @return milliseconds since the epoch
+     */
+    static long fromDosTime(long dosTime) {
+        // out-of-range fields roll over into the next larger field, as with java.util.Date
+        LocalDateTime t = LocalDateTime.of((int) ((dosTime >> 25) & 0x7f) + 1980, 1, 1, 0, 0)
+                .plusMonths(((dosTime >> 21) & 0x0f) - 1)
+                .plusDays(((dosTime >> 16) & 0x1f) - 1)
+                .plusHours((dosTime >> 11) & 0x1f)
+                .plusMinutes((dosTime >> 5) & 0x3f)
+                .plusSeconds((dosTime << 1) & 0x3e);
+        return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Value class that represents a zip entry whose data is ready to be written verbatim.
+     */
+    static class Entry {
+
+        public final String name;
+        public final int method;
+        public final long crc;
+        public final long compressedSize;
+        public final long size;
+        public final long dosTime;
+        public final InputSource data;
+
+        /**
+         * Constructs an instance.
+         * @param name entry name
+         * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+         * @param crc CRC-32 of the uncompressed data
+         * @param compressedSize length of the data as written
+         * @param size length of the uncompressed data
+         * @param dosTime modification time in MS-DOS format
+         * @param data source of the data as written; compressed if the method is {@code DEFLATED}
+         */
+        public Entry(String name, int method, long crc, long compressedSize, long size, long dosTime, InputSource data) {
+            if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+                throw new IllegalArgumentException("unsupported method: " + method);
+            }
+            this.name = requireNonNull(name);
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.dosTime = dosTime;
+            this.data = requireNonNull(data);
+        }
+
+        public static Entry directory(String name, long dosTime) {
+            return new Entry(name, ZipEntry.STORED, 0, 0, 0, dosTime, InputSource.wrap(new byte[0]));
+        }
+
+        private int versionNeeded() {
+            return method == ZipEntry.DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ZipWriter.Entry{name=%s,method=%d,size=%d,compressedSize=%d}", name, method, size, compressedSize);
+        }
+    }
+
+    private static class WrittenEntry {
+
+        public final Entry entry;
+        public final byte[] name;
+        public final long localHeaderOffset;
+
+        private WrittenEntry(Entry entry, byte[] name, long localHeaderOffset) {
+            this.entry = entry;
+            this.name = name;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+}
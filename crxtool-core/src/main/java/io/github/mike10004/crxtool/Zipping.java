@@ -1,9 +1,13 @@
 package io.github.mike10004.crxtool;
 
 import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -24,21 +28,105 @@ public class Zipping {
      */
     public static byte[] zipDirectory(Path extensionDir, @Nullable ZipConfig zipConfig) throws IOException {
         ByteArrayOutputStream zipBuffer = new ByteArrayOutputStream(1024);
-        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zipBuffer)) {
-            java.nio.file.Files.walkFileTree(extensionDir, new ZippingFileVisitor(extensionDir, zipOutputStream));
-            if (zipConfig != null) {
-                if (zipConfig.comment != null) {
-                    zipOutputStream.setComment(zipConfig.comment);
-                }
-                if (zipConfig.method != null) {
-                    zipOutputStream.setMethod(zipConfig.method);
-                }
-                if (zipConfig.level != null) {
-                    zipOutputStream.setLevel(zipConfig.level);
-                }
-            }
-        }
+        zipDirectory(extensionDir, zipConfig, zipBuffer);
         byte[] zipBytes = zipBuffer.toByteArray();
         return zipBytes;
     }
+
+    /**
+     * Writes a zip archive containing all files in a directory to an output stream.
+     * The output stream is flushed but not closed.
+     * @param extensionDir directory
+     * @param zipConfig configuration
+     * @param output the destination
+     * @throws IOException if I/O goes awry
+     */
+    public static void zipDirectory(Path extensionDir, @Nullable ZipConfig zipConfig, OutputStream output) throws IOException {
+        ZipOutputStream zipOutputStream = new ZipOutputStream(output);
+        int method = ZipOutputStream.DEFLATED;
+        if (zipConfig != null) {
+            if (zipConfig.comment != null) {
+                zipOutputStream.setComment(zipConfig.comment);
+            }
+            if (zipConfig.method != null) {
+                method = zipConfig.method;
+                zipOutputStream.setMethod(method);
+            }
+            if (zipConfig.level != null) {
+                zipOutputStream.setLevel(zipConfig.level);
+            }
+        }
+        boolean deterministic = zipConfig != null && zipConfig.deterministic;
+        // the timestamp is converted back to the same MS-DOS time, so no extended timestamp field is written
+        Long entryTime = deterministic ? ZipWriter.fromDosTime(ZipWriter.DETERMINISTIC_DOS_TIME) : null;
+        ZippingFileVisitor visitor = new ZippingFileVisitor(extensionDir, zipOutputStream, method, entryTime);
+        if (deterministic) {
+            visitor.writeInNameOrder();
+        } else {
+            java.nio.file.Files.walkFileTree(extensionDir, visitor);
+        }
+        zipOutputStream.finish();
+        zipOutputStream.flush();
+    }
+
+    /**
+     * Writes a zip archive containing all files in a directory to a file.
+     * The archive is never held in memory in its entirety.
+     * @param extensionDir directory
+     * @param zipConfig configuration
+     * @param zipFile the destination file; created or truncated
+     * @return an input source that reads the zip file
+     * @throws IOException if I/O goes awry
+     */
+    public static InputSource zipDirectory(Path extensionDir, @Nullable ZipConfig zipConfig, Path zipFile) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(java.nio.file.Files.newOutputStream(zipFile))) {
+            zipDirectory(extensionDir, zipConfig, output);
+        }
+        return InputSource.fromFile(zipFile);
+    }
+
+    /**
+     * Writes a zip archive containing all files in a directory to an output stream,
+     * compressing entries concurrently. At most 64 MiB of file data is buffered in memory
+     * at a time; larger files are compressed to temporary files. Entries are written in the same order as by
+     * {@link #zipDirectory(Path, ZipConfig, OutputStream)}, but the archive bytes
+     * may differ. The output stream is flushed but not closed.
+     * Archives that would require zip64 extensions are not supported.
+     * @param extensionDir directory
+     * @param zipConfig configuration
+     * @param output the destination
+     * @param executor executor that compresses entries, such as {@link java.util.concurrent.ForkJoinPool#commonPool()}
+     * @throws IOException if I/O goes awry
+     */
+    public static void zipDirectory(Path extensionDir, @Nullable ZipConfig zipConfig, OutputStream output, Executor executor) throws IOException {
+        int maxEntriesInFlight = Runtime.getRuntime().availableProcessors() * 2;
+        new ParallelZipping(executor, maxEntriesInFlight, ParallelZipping.DEFAULT_MAX_BYTES_IN_FLIGHT).zipDirectory(extensionDir, zipConfig, output);
+    }
+
+    /**
+     * Writes a zip archive that is a copy of an existing archive, recompressing only the
+     * entries that have changed. Unchanged entries are copied with their compressed bytes
+     * and checksums as they are, without decompressing them, so repacking costs little
+     * more than copying the archive. Each changed entry is read from the file at the
+     * corresponding path in the extension directory; if that file does not exist, the
+     * entry is omitted. A changed entry whose name resolves to a path outside the extension
+     * directory is rejected with a {@link java.util.zip.ZipException} before anything is written.
+     * Changed entries that are not in the existing archive are added
+     * after the others, in name order. The comment and the compression options of the
+     * zip configuration apply only to recompressed entries and to the archive comment;
+     * if no comment is configured, the existing archive's comment is kept.
+     * The output stream is flushed but not closed.
+     * Archives that would require zip64 extensions are not supported.
+     * @param sourceArchive a zip file, or a CRX file whose archive is to be copied
+     * @param extensionDir directory containing the current versions of changed files
+     * @param changedEntries names of entries that have been modified, added, or deleted
+     * @param zipConfig configuration
+     * @param output the destination
+     * @throws IOException if I/O goes awry
+     */
+    public static void repack(Path sourceArchive, Path extensionDir, Set<String> changedEntries, @Nullable ZipConfig zipConfig, OutputStream output) throws IOException {
+        try (ZipArchive source = ZipArchive.open(sourceArchive)) {
+            new ZipRepacking(extensionDir, changedEntries, zipConfig).repack(source, output);
+        }
+    }
 }
@@ -1,10 +1,18 @@
 package io.github.mike10004.crxtool;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -12,33 +20,113 @@ class ZippingFileVisitor implements FileVisitor<Path> {
 
     private final Path enclosure;
     private final ZipOutputStream zipOutputStream;
+    private final int method;
+    @Nullable
+    private final Long entryTime;
 
     public ZippingFileVisitor(Path enclosure, ZipOutputStream zipOutputStream) {
+        this(enclosure, zipOutputStream, ZipEntry.DEFLATED);
+    }
+
+    public ZippingFileVisitor(Path enclosure, ZipOutputStream zipOutputStream, int method) {
+        this(enclosure, zipOutputStream, method, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param enclosure the directory being zipped
+     * @param zipOutputStream the zip output stream
+     * @param method the default compression method of the zip output stream;
+     *               stored entries must have their size and checksum set in advance
+     * @param entryTime modification time of every entry, or null to use the time each entry is written
+     */
+    public ZippingFileVisitor(Path enclosure, ZipOutputStream zipOutputStream, int method, @Nullable Long entryTime) {
         this.enclosure = enclosure;
         this.zipOutputStream = zipOutputStream;
+        this.method = method;
+        this.entryTime = entryTime;
+    }
+
+    /**
+     * Writes entries for all files and subdirectories of the enclosure in entry name order,
+     * rather than in the order in which the file system lists them.
+     * @throws IOException on I/O error
+     */
+    public void writeInNameOrder() throws IOException {
+        SortedMap<String, Path> paths = new TreeMap<>();
+        java.nio.file.Files.walkFileTree(enclosure, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.toFile().getAbsoluteFile().equals(enclosure.toFile().getAbsoluteFile())) {
+                    paths.put(normalize(dir) + "/", dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                paths.put(normalize(file), file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (Map.Entry<String, Path> path : paths.entrySet()) {
+            if (path.getKey().endsWith("/")) {
+                writeDirectoryEntry(path.getKey());
+            } else {
+                writeFileEntry(path.getKey(), path.getValue());
+            }
+        }
     }
 
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
         if (!dir.toFile().getAbsoluteFile().equals(enclosure.toFile().getAbsoluteFile())) {
-            String relativeDirName = normalize(dir) + "/";
-            zipOutputStream.putNextEntry(new ZipEntry(relativeDirName));
-            zipOutputStream.closeEntry();
+            writeDirectoryEntry(normalize(dir) + "/");
         }
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        String fileEntryName = normalize(file);
-        ZipEntry entry = new ZipEntry(fileEntryName);
+        writeFileEntry(normalize(file), file);
+        return FileVisitResult.CONTINUE;
+    }
+
+    private void writeDirectoryEntry(String entryName) throws IOException {
+        ZipEntry entry = createEntry(entryName);
+        if (method == ZipEntry.STORED) {
+            entry.setSize(0);
+            entry.setCrc(0);
+        }
         zipOutputStream.putNextEntry(entry);
-        com.google.common.io.Files.asByteSource(file.toFile()).copyTo(zipOutputStream);
         zipOutputStream.closeEntry();
-        return FileVisitResult.CONTINUE;
+    }
+
+    private void writeFileEntry(String entryName, Path file) throws IOException {
+        ZipEntry entry = createEntry(entryName);
+        ByteSource source = com.google.common.io.Files.asByteSource(file.toFile());
+        if (method == ZipEntry.STORED) {
+            entry.setSize(source.size());
+            entry.setCrc(source.hash(Hashing.crc32()).padToLong());
+        }
+        zipOutputStream.putNextEntry(entry);
+        source.copyTo(zipOutputStream);
+        zipOutputStream.closeEntry();
+    }
+
+    private ZipEntry createEntry(String entryName) {
+        ZipEntry entry = new ZipEntry(entryName);
+        if (entryTime != null) {
+            entry.setTime(entryTime);
+        }
+        return entry;
     }
 
     private String normalize(Path path) {
+        return entryName(enclosure, path);
+    }
+
+    static String entryName(Path enclosure, Path path) {
         Path relativeDir = enclosure.relativize(path);
         return CommonsIoFilenameUtils.normalizeNoEndSeparator(relativeDir.toString(), true);
     }
@@ -1,6 +1,7 @@
 package io.github.mike10004.crxtool;
 
 import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharSource;
 import com.google.common.io.Resources;
 import io.github.mike10004.crxtool.testing.Unzippage;
@@ -23,6 +24,7 @@ import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.junit.Assert.assertArrayEquals;
@@ -200,4 +202,79 @@ public class BasicCrxParserTest {
         assertNotNull(parsed.metadata); // we mostly just care that this doesn't throw an exception
         assertEquals("expected magic number", expectedMagicNumber, parsed.metadata.getMagicNumber());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void parseInventory_path_crx2() throws Exception {
+        testParseInventoryFromPath(Tests.getMakePageRedCrxFile(CrxVersion.CRX2));
+    }
+
+    @Test
+    public void parseInventory_path_crx3() throws Exception {
+        testParseInventoryFromPath(Tests.getMakePageRedCrxFile(CrxVersion.CRX3));
+    }
+
+    private void testParseInventoryFromPath(File crxFile) throws IOException {
+        CrxInventory expected;
+        long streamedArchiveLength;
+        try (InputStream in = new FileInputStream(crxFile)) {
+            expected = new BasicCrxParser().parseInventory(in);
+            streamedArchiveLength = ByteStreams.exhaust(in);
+        }
+        CrxInventory actual = new BasicCrxParser().parseInventory(crxFile.toPath());
+        assertEquals("metadata", expected.metadata(), actual.metadata());
+        assertEquals("segments", describe(expected.streamSegments()), describe(actual.streamSegments()));
+        assertEquals("archive offset", crxFile.length() - streamedArchiveLength, actual.archiveOffset());
+        byte[] zipSignature = com.google.common.io.Files.asByteSource(crxFile).slice(actual.archiveOffset(), 4).read();
+        assertArrayEquals("zip signature at archive offset", new byte[]{'P', 'K', 3, 4}, zipSignature);
+    }
+
+    private static List<String> describe(List<StreamSegment> segments) {
+        return segments.stream().map(s -> String.format("%s[%d,%d)", s.label(), s.start(), s.end())).collect(Collectors.toList());
+    }
+
+    @Test(expected = EOFException.class)
+    public void parseInventory_path_truncated() throws Exception {
+        byte[] crxBytes = Resources.toByteArray(Tests.getMakePageRedCrxResource(CrxVersion.CRX3));
+        File truncated = temporaryFolder.newFile();
+        Files.write(truncated.toPath(), Arrays.copyOf(crxBytes, 100));
+        new BasicCrxParser().parseInventory(truncated.toPath());
+    }
+
+    @Test
+    public void parseHeaderOnly_crx2() throws Exception {
+        testParseHeaderOnly(CrxVersion.CRX2);
+    }
+
+    @Test
+    public void parseHeaderOnly_crx3() throws Exception {
+        testParseHeaderOnly(CrxVersion.CRX3);
+    }
+
+    private void testParseHeaderOnly(CrxVersion version) throws IOException {
+        File crxFile = Tests.getMakePageRedCrxFile(version);
+        CrxInventory expected = new BasicCrxParser().parseInventory(crxFile.toPath());
+        byte[] crxBytes = Files.readAllBytes(crxFile.toPath());
+        // simulate a partially downloaded file that ends a few bytes into the archive
+        File partial = temporaryFolder.newFile();
+        Files.write(partial.toPath(), Arrays.copyOf(crxBytes, Math.toIntExact(expected.archiveOffset()) + 3));
+        CrxInventory actual = new BasicCrxParser().parseHeaderOnly(partial.toPath());
+        assertEquals("metadata", expected.metadata(), actual.metadata());
+        assertEquals("segments", describe(expected.streamSegments()), describe(actual.streamSegments()));
+        assertEquals("archive offset", expected.archiveOffset(), actual.archiveOffset());
+    }
+
+    @Test(expected = EOFException.class)
+    public void parseHeaderOnly_truncated() throws Exception {
+        byte[] crxBytes = Resources.toByteArray(Tests.getMakePageRedCrxResource(CrxVersion.CRX3));
+        File truncated = temporaryFolder.newFile();
+        Files.write(truncated.toPath(), Arrays.copyOf(crxBytes, 100));
+        new BasicCrxParser().parseHeaderOnly(truncated.toPath());
+    }
+
+    @Test(expected = CrxParsingException.class)
+    public void parseHeaderOnly_notCrx() throws Exception {
+        File notCrx = temporaryFolder.newFile();
+        Files.write(notCrx.toPath(), "PK\003\004 this is not a crx file".getBytes(StandardCharsets.US_ASCII));
+        new BasicCrxParser().parseHeaderOnly(notCrx.toPath());
+    }
+}
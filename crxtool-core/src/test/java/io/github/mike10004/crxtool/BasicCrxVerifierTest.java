@@ -0,0 +1,129 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.io.Resources;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BasicCrxVerifierTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void verify_crx2() throws Exception {
+        CrxVerification verification = CrxVerifier.getDefault().verify(Tests.getMakePageRedCrxFile(CrxVersion.CRX2).toPath());
+        assertTrue("verified: " + verification, verification.isVerified());
+        assertEquals("num proofs", 1, verification.proofResults().size());
+    }
+
+    @Test
+    public void verify_crx3() throws Exception {
+        CrxVerification verification = CrxVerifier.getDefault().verify(Tests.getMakePageRedCrxFile(CrxVersion.CRX3).toPath());
+        assertTrue("verified: " + verification, verification.isVerified());
+    }
+
+    @Test
+    public void verify_multiversion() throws Exception {
+        for (int version : new int[]{2, 3}) {
+            URL resource = Tests.getMultiversionCrxExample().getResource(version);
+            CrxVerification verification;
+            try (InputStream in = resource.openStream()) {
+                verification = CrxVerifier.getDefault().verify(in);
+            }
+            System.out.format("crx%d: %s%n", version, verification);
+            assertTrue("verified crx" + version, verification.isVerified());
+        }
+    }
+
+    @Test
+    public void verify_tamperedArchive() throws Exception {
+        byte[] crxBytes = Resources.toByteArray(Tests.getMakePageRedCrxResource(CrxVersion.CRX3));
+        CrxInventory inventory = CrxParser.getDefault().parseInventory(new ByteArrayInputStream(crxBytes));
+        int archiveOffset = Math.toIntExact(inventory.archiveOffset());
+        crxBytes[archiveOffset + (crxBytes.length - archiveOffset) / 2] ^= 0x01;
+        File tamperedFile = temporaryFolder.newFile("tampered.crx");
+        Files.write(tamperedFile.toPath(), crxBytes);
+        CrxVerification verification = CrxVerifier.getDefault().verify(tamperedFile.toPath());
+        assertFalse("verified", verification.isVerified());
+        CrxVerification.ProofResult result = verification.proofResults().get(0);
+        assertFalse("valid", result.isValid());
+        assertNotNull("message", result.message());
+    }
+
+    @Test
+    public void verify_crx3_headerWithoutSignedData() throws Exception {
+        byte[] crxBytes = Resources.toByteArray(Tests.getMakePageRedCrxResource(CrxVersion.CRX3));
+        CrxInventory parsed = CrxParser.getDefault().parseInventory(new ByteArrayInputStream(crxBytes));
+        CrxFileHeader parsedHeader = parsed.metadata().getFileHeader();
+        CrxFileHeader header = new CrxFileHeader() {
+            @Override
+            public List<AsymmetricKeyProof> getAsymmetricKeyProofs(CrxProofAlgorithm algorithm) {
+                return parsedHeader.getAsymmetricKeyProofs(algorithm);
+            }
+
+            @Override
+            public List<AsymmetricKeyProofContainer> getAllAsymmetricKeyProofs() {
+                return parsedHeader.getAllAsymmetricKeyProofs();
+            }
+
+            @Override
+            public int numBytes() {
+                return parsedHeader.numBytes();
+            }
+        };
+        CrxMetadata metadata = new CrxMetadata() {
+            @Override
+            public CrxFileHeader getFileHeader() {
+                return header;
+            }
+
+            @Override
+            public String getId() {
+                return parsed.metadata().getId();
+            }
+
+            @Override
+            public String getMagicNumber() {
+                return parsed.metadata().getMagicNumber();
+            }
+
+            @Override
+            public CrxVersion getCrxVersion() {
+                return CrxVersion.CRX3;
+            }
+        };
+        CrxInventory inventory = new CrxInventory() {
+            @Override
+            public CrxMetadata metadata() {
+                return metadata;
+            }
+
+            @Override
+            public List<StreamSegment> streamSegments() {
+                return parsed.streamSegments();
+            }
+        };
+        int archiveOffset = Math.toIntExact(parsed.archiveOffset());
+        ByteArrayInputStream archive = new ByteArrayInputStream(crxBytes, archiveOffset, crxBytes.length - archiveOffset);
+        CrxVerification verification = CrxVerifier.getDefault().verify(inventory, archive);
+        assertFalse("verified", verification.isVerified());
+        assertEquals("archive read to end", 0, archive.available());
+        for (CrxVerification.ProofResult result : verification.proofResults()) {
+            assertFalse("valid", result.isValid());
+            assertNotNull("message", result.message());
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -32,6 +33,17 @@ public class BasicSignerTest {
         sign("SHA256");
     }
 
+    @Test
+    public void sign_inputSource() throws Exception {
+        PrivateKey privateKey = KeyPairs.loadRsaPrivateKeyFromKeyBytes(PemParser.getInstance().extractBytes(new StringReader(TEST_KEY_PKCS8_PEM)));
+        byte[] theData = new byte[100 * 1024 + 17];
+        new Random(getClass().getName().hashCode()).nextBytes(theData);
+        Signer signer = new BasicSigner("SHA256", "RSA");
+        byte[] expected = signer.sign(theData, privateKey);
+        byte[] actual = signer.sign(InputSource.wrap(theData), privateKey);
+        assertArrayEquals("streamed signature", expected, actual);
+    }
+
     private static final Charset dataCharset = StandardCharsets.UTF_8;
     private static final Charset sigCharset = StandardCharsets.US_ASCII;
 
@@ -0,0 +1,112 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CachingCrxParserTest {
+
+    @Test
+    public void parseInventory() throws Exception {
+        CachingCrxParser parser = new CachingCrxParser(CrxParser.getDefault(), 10);
+        for (CrxVersion version : CrxVersion.values()) {
+            byte[] crxBytes = Resources.toByteArray(Tests.getMakePageRedCrxResource(version));
+            CrxInventory expected = CrxParser.getDefault().parseInventory(new ByteArrayInputStream(crxBytes));
+            byte[] expectedArchive = Arrays.copyOfRange(crxBytes, (int) expected.archiveOffset(), crxBytes.length);
+            CrxInventory first, second;
+            try (InputStream in = new ByteArrayInputStream(crxBytes)) {
+                first = parser.parseInventory(in);
+                assertArrayEquals("archive remains after miss", expectedArchive, ByteStreams.toByteArray(in));
+            }
+            try (InputStream in = new ByteArrayInputStream(crxBytes)) {
+                second = parser.parseInventory(in);
+                assertArrayEquals("archive remains after hit", expectedArchive, ByteStreams.toByteArray(in));
+            }
+            assertEquals("metadata", expected.metadata(), first.metadata());
+            assertSame("cached instance", first, second);
+            assertSame("cached instance from path", first, parser.parseHeaderOnly(Tests.getMakePageRedCrxFile(version).toPath()));
+        }
+        assertEquals("misses", 2, parser.missCount());
+        assertEquals("hits", 4, parser.hitCount());
+        assertEquals("size", 2, parser.size());
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        CachingCrxParser parser = new CachingCrxParser(CrxParser.getDefault(), 1);
+        parser.parseInventory(Tests.getMakePageRedCrxFile(CrxVersion.CRX2).toPath());
+        parser.parseInventory(Tests.getMakePageRedCrxFile(CrxVersion.CRX3).toPath());
+        assertEquals("evictions", 1, parser.evictionCount());
+        assertEquals("size", 1, parser.size());
+    }
+
+    @Test
+    public void parseInventory_concurrentMissesLoadOnce() throws Exception {
+        Path crxFile = Tests.getMakePageRedCrxFile(CrxVersion.CRX3).toPath();
+        AtomicInteger parses = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        CachingCrxParser parser = new CachingCrxParser(in -> {
+            parses.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return CrxParser.getDefault().parseInventory(in);
+        }, 10);
+        int numThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<CrxInventory>> results = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                results.add(executor.submit(() -> parser.parseInventory(crxFile)));
+            }
+            started.await();
+            release.countDown();
+            CrxInventory first = results.get(0).get();
+            for (Future<CrxInventory> result : results) {
+                assertSame("cached instance", first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("parses", 1, parses.get());
+        assertEquals("misses", 1, parser.missCount());
+        assertEquals("hits", numThreads - 1, parser.hitCount());
+    }
+
+    @Test
+    public void parseInventory_delegateFails() throws Exception {
+        IOException failure = new IOException("bad header");
+        CachingCrxParser parser = new CachingCrxParser(in -> {
+            throw failure;
+        }, 10);
+        try {
+            parser.parseInventory(Tests.getMakePageRedCrxFile(CrxVersion.CRX3).toPath());
+            fail("expected failure");
+        } catch (IOException e) {
+            assertSame("exception", failure, e);
+        }
+        assertEquals("size", 0, parser.size());
+    }
+}
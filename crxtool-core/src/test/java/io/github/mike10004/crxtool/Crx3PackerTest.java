@@ -2,16 +2,39 @@ package io.github.mike10004.crxtool;
 
 import com.google.common.io.ByteStreams;
 
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class Crx3PackerTest extends CrxPackerTestBase {
 
@@ -50,4 +73,146 @@ public class Crx3PackerTest extends CrxPackerTestBase {
         AsymmetricKeyProof proof = proofs.get(0);
         assertEquals("public key base64", KeyPairs.encodePublicKeyBase64(packResult.keyPairUsedToSignFile), proof.getPublicKeyBase64());
     }
+
+    @Test
+    public void packExtension_fileChannel() throws Exception {
+        KeyPair keyPair = TestingKey.getInstance().loadTestingKeyPair();
+        File zipFile = Tests.chopZipFromCrx(Tests.getMakePageRedCrxFile(CrxVersion.CRX3));
+        InputSource zipSource = InputSource.fromFile(zipFile.toPath());
+        File streamedCrxFile = File.createTempFile("streamed", ".crx", temporaryFolder.getRoot());
+        try (OutputStream out = new FileOutputStream(streamedCrxFile)) {
+            createCrxPacker().packExtension(zipSource, keyPair, out);
+        }
+        File transferredCrxFile = File.createTempFile("transferred", ".crx", temporaryFolder.getRoot());
+        try (FileChannel channel = FileChannel.open(transferredCrxFile.toPath(), StandardOpenOption.WRITE)) {
+            createCrxPacker().packExtension(zipSource, keyPair, channel);
+        }
+        assertArrayEquals("crx bytes", java.nio.file.Files.readAllBytes(streamedCrxFile.toPath()), java.nio.file.Files.readAllBytes(transferredCrxFile.toPath()));
+        CrxInventory inventory;
+        try (InputStream in = new FileInputStream(transferredCrxFile)) {
+            inventory = CrxParser.getDefault().parseInventory(in);
+            assertArrayEquals("archive", java.nio.file.Files.readAllBytes(zipFile.toPath()), ByteStreams.toByteArray(in));
+        }
+        assertEquals("id", TestingKey.getInstance().getIdPmdecimal(), inventory.metadata().getId());
+    }
+
+    @Test
+    public void packExtension_multipleKeys() throws Exception {
+        KeyPair firstKeyPair = Tests.generateRsaKeyPair(1L);
+        KeyPair secondKeyPair = Tests.generateRsaKeyPair(2L);
+        File zipFile = Tests.chopZipFromCrx(Tests.getMakePageRedCrxFile(CrxVersion.CRX3));
+        File crxFile = File.createTempFile("multikey", ".crx", temporaryFolder.getRoot());
+        try (OutputStream out = new FileOutputStream(crxFile)) {
+            new Crx3Packer().packExtension(InputSource.fromFile(zipFile.toPath()), Arrays.asList(secondKeyPair, firstKeyPair), out);
+        }
+        CrxInventory inventory = CrxParser.getDefault().parseInventory(crxFile.toPath());
+        List<AsymmetricKeyProof> proofs = inventory.metadata().getFileHeader().getAsymmetricKeyProofs(Crx3ProofAlgorithm.sha256_with_rsa);
+        assertEquals("num proofs", 2, proofs.size());
+        assertEquals("id", CrxIds.fromPublicKey(secondKeyPair.getPublic().getEncoded()), inventory.metadata().getId());
+        CrxVerification verification = CrxVerifier.getDefault().verify(crxFile.toPath());
+        assertEquals("num results", 2, verification.proofResults().size());
+        assertTrue("verified", verification.isVerified());
+    }
+
+    @Test
+    public void packExtension_ecdsa() throws Exception {
+        KeyPair ecKeyPair = Tests.generateEcKeyPair(3L);
+        KeyPair rsaKeyPair = Tests.generateRsaKeyPair(4L);
+        File zipFile = Tests.chopZipFromCrx(Tests.getMakePageRedCrxFile(CrxVersion.CRX3));
+        File crxFile = File.createTempFile("ecdsa", ".crx", temporaryFolder.getRoot());
+        try (OutputStream out = new FileOutputStream(crxFile)) {
+            new Crx3Packer().packExtension(InputSource.fromFile(zipFile.toPath()), Arrays.asList(ecKeyPair, rsaKeyPair), out);
+        }
+        CrxInventory inventory = CrxParser.getDefault().parseInventory(crxFile.toPath());
+        CrxFileHeader fileHeader = inventory.metadata().getFileHeader();
+        List<AsymmetricKeyProof> ecdsaProofs = fileHeader.getAsymmetricKeyProofs(Crx3ProofAlgorithm.sha256_with_ecdsa);
+        assertEquals("num ecdsa proofs", 1, ecdsaProofs.size());
+        assertEquals("num rsa proofs", 1, fileHeader.getAsymmetricKeyProofs(Crx3ProofAlgorithm.sha256_with_rsa).size());
+        assertEquals("public key base64", KeyPairs.encodePublicKeyBase64(ecKeyPair), ecdsaProofs.get(0).getPublicKeyBase64());
+        assertEquals("id", CrxIds.fromPublicKey(ecKeyPair.getPublic().getEncoded()), inventory.metadata().getId());
+        assertTrue("verified", CrxVerifier.getDefault().verify(crxFile.toPath()).isVerified());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packExtension_ecdsaOtherCurve() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp384r1"), new SecureRandom(new byte[]{5}));
+        KeyPair keyPair = keyGen.generateKeyPair();
+        File zipFile = Tests.chopZipFromCrx(Tests.getMakePageRedCrxFile(CrxVersion.CRX3));
+        new Crx3Packer().packExtension(InputSource.fromFile(zipFile.toPath()), keyPair, ByteStreams.nullOutputStream());
+    }
+
+    @Test
+    public void packExtension_directoryPipelined() throws Exception {
+        KeyPair firstKeyPair = Tests.generateRsaKeyPair(7L), secondKeyPair = Tests.generateEcKeyPair(8L);
+        Path extensionDir = Tests.getAddFooterExtensionDir(CrxVersion.CRX3);
+        File crxFile = File.createTempFile("pipelined", ".crx", temporaryFolder.getRoot());
+        try (OutputStream out = new FileOutputStream(crxFile)) {
+            new Crx3Packer().packExtension(extensionDir, null, Arrays.asList(firstKeyPair, secondKeyPair), out);
+        }
+        CrxVerification verification = CrxVerifier.getDefault().verify(crxFile.toPath());
+        assertEquals("num results", 2, verification.proofResults().size());
+        assertTrue("verified", verification.isVerified());
+        try (CrxArchive archive = CrxArchive.open(crxFile.toPath())) {
+            assertNotNull("manifest", archive.getEntry("manifest.json"));
+        }
+    }
+
+    @Test
+    public void packExtension_nonIncrementalSigner() throws Exception {
+        KeyPair keyPair = Tests.generateRsaKeyPair(9L);
+        Signer delegate = new BasicSigner("SHA256", "RSA");
+        Signer signer = delegate::sign;
+        Crx3Packer packer = new Crx3Packer() {
+            @Override
+            protected Signer createSigner(KeyPair keyPair) {
+                return signer;
+            }
+        };
+        File crxFile = File.createTempFile("nonincremental", ".crx", temporaryFolder.getRoot());
+        try (OutputStream out = new FileOutputStream(crxFile)) {
+            packer.packExtension(Tests.getAddFooterExtensionDir(CrxVersion.CRX3), null, keyPair, out);
+        }
+        CrxVerification verification = CrxVerifier.getDefault().verify(crxFile.toPath());
+        assertTrue("verified: " + verification, verification.isVerified());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packExtension_duplicateKeys() throws Exception {
+        KeyPair keyPair = Tests.generateRsaKeyPair(1L);
+        new Crx3Packer().packExtension(InputSource.wrap(new byte[0]), Arrays.asList(keyPair, keyPair), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void packExtensionAsync() throws Exception {
+        KeyPair keyPair = Tests.generateRsaKeyPair(5L);
+        Path outputFile = temporaryFolder.getRoot().toPath().resolve("async.crx");
+        ExecutorService zipExecutor = Executors.newSingleThreadExecutor(), signExecutor = Executors.newSingleThreadExecutor();
+        CrxPackResult result;
+        try {
+            result = new Crx3Packer().packExtensionAsync(Tests.getAddFooterExtensionDir(CrxVersion.CRX3), null, keyPair, outputFile, zipExecutor, signExecutor).get();
+        } finally {
+            zipExecutor.shutdownNow();
+            signExecutor.shutdownNow();
+        }
+        assertEquals("output file", outputFile, result.outputFile());
+        assertEquals("size", java.nio.file.Files.size(outputFile), result.size());
+        assertEquals("id", CrxIds.fromPublicKey(keyPair.getPublic().getEncoded()), result.crxId());
+        assertEquals("id in file", result.crxId(), CrxParser.getDefault().parseInventory(outputFile).metadata().getId());
+        assertTrue("verified", CrxVerifier.getDefault().verify(outputFile).isVerified());
+    }
+
+    @Test
+    public void packExtensionAsync_missingDirectory() throws Exception {
+        Path outputFile = temporaryFolder.getRoot().toPath().resolve("missing.crx");
+        Path extensionDir = temporaryFolder.getRoot().toPath().resolve("does-not-exist");
+        CompletableFuture<CrxPackResult> future = new Crx3Packer().packExtensionAsync(extensionDir, null, Tests.generateRsaKeyPair(6L), outputFile, ForkJoinPool.commonPool());
+        try {
+            future.get();
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue("cause is IOException: " + e.getCause(), e.getCause() instanceof IOException);
+        }
+        assertFalse("output file exists", java.nio.file.Files.exists(outputFile));
+    }
 }
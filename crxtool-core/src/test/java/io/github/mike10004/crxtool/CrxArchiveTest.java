@@ -0,0 +1,101 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import io.github.mike10004.crxtool.testing.Unzippage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CrxArchiveTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void open_crx2() throws Exception {
+        testOpen(Tests.getMakePageRedCrxFile(CrxVersion.CRX2));
+    }
+
+    @Test
+    public void open_crx3() throws Exception {
+        testOpen(Tests.getMakePageRedCrxFile(CrxVersion.CRX3));
+    }
+
+    private void testOpen(File crxFile) throws Exception {
+        Unzippage expected = Unzippage.unzip(Tests.chopZipFromCrx(crxFile));
+        try (CrxArchive archive = CrxArchive.open(crxFile.toPath())) {
+            assertEquals("id", TestingKey.getInstance().getIdPmdecimal(), archive.inventory().metadata().getId());
+            Set<String> names = archive.entries().stream().map(ZipEntry::getName).collect(ImmutableSet.toImmutableSet());
+            assertEquals("entry names", ImmutableSet.copyOf(expected.allEntries()), names);
+            for (String name : expected.fileEntries()) {
+                ZipEntry entry = archive.getEntry(name);
+                assertNotNull(name, entry);
+                byte[] actual;
+                try (InputStream in = archive.getInputStream(entry)) {
+                    actual = ByteStreams.toByteArray(in);
+                }
+                assertArrayEquals("content of " + name, expected.getFileBytes(name).read(), actual);
+                assertEquals("size of " + name, actual.length, entry.getSize());
+            }
+            assertNull("absent entry", archive.getEntry("not-present.txt"));
+        }
+    }
+
+    @Test
+    public void open_manyEntries() throws Exception {
+        Path extensionDir = temporaryFolder.newFolder().toPath();
+        int numFiles = 2000;
+        Files.write(extensionDir.resolve("manifest.json"), "{\"manifest_version\": 2}".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < numFiles; i++) {
+            Path file = extensionDir.resolve(String.format("d%d/f%d.js", i % 10, i));
+            Files.createDirectories(file.getParent());
+            Files.write(file, String.format("console.log(%d);%n", i).getBytes(StandardCharsets.UTF_8));
+        }
+        KeyPair keyPair = TestingKey.getInstance().loadTestingKeyPair();
+        File crxFile = temporaryFolder.newFile("many.crx");
+        try (OutputStream out = new FileOutputStream(crxFile)) {
+            CrxPacker.getDefault().packExtension(extensionDir, new ZipConfig(null, null, "many entries"), keyPair, out);
+        }
+        File zipFile = Tests.chopZipFromCrx(crxFile);
+        try (CrxArchive archive = CrxArchive.open(crxFile.toPath());
+             ZipFile reference = new ZipFile(zipFile)) {
+            assertEquals("num entries", reference.size(), archive.entries().size());
+            assertEquals("comment", reference.getComment(), archive.getComment());
+            ZipEntry manifest = archive.getEntry("manifest.json");
+            assertNotNull("manifest", manifest);
+            try (InputStream in = archive.getInputStream(manifest)) {
+                assertEquals("{\"manifest_version\": 2}", new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+            }
+            ZipEntry entry = archive.getEntry("d7/f1237.js");
+            ZipEntry referenceEntry = reference.getEntry("d7/f1237.js");
+            assertNotNull(entry);
+            assertEquals("crc", referenceEntry.getCrc(), entry.getCrc());
+            assertEquals("time", referenceEntry.getTime(), entry.getTime());
+            try (InputStream in = archive.getInputStream(entry)) {
+                assertEquals("console.log(1237);" + System.lineSeparator(), new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+            }
+            try (InputStream in = Channels.newInputStream(archive.newArchiveChannel())) {
+                assertArrayEquals("archive channel", Files.readAllBytes(zipFile.toPath()), ByteStreams.toByteArray(in));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CrxIdsTest {
+
+    @Test
+    public void fromDigest() {
+        byte[] digest = new byte[32];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) (i * 17);
+        }
+        assertEquals("aabbccddeeffgghhiijjkkllmmnnoopp", CrxIds.fromDigest(digest));
+    }
+
+    @Test
+    public void fromPublicKey() throws Exception {
+        KeyPair keyPair = TestingKey.getInstance().loadTestingKeyPair();
+        byte[] publicKeyBytes = keyPair.getPublic().getEncoded();
+        String expected = TestingKey.getInstance().getIdPmdecimal();
+        assertEquals("from array", expected, CrxIds.fromPublicKey(publicKeyBytes));
+        assertEquals("from buffer", expected, CrxIds.fromPublicKey(ByteBuffer.wrap(publicKeyBytes)));
+        byte[] fullDigest = Hashing.sha256().hashBytes(publicKeyBytes).asBytes();
+        assertArrayEquals("binary id", Arrays.copyOf(fullDigest, CrxIds.DIGEST_LENGTH), CrxIds.digestPublicKey(publicKeyBytes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromDigest_tooShort() {
+        CrxIds.fromDigest(new byte[CrxIds.DIGEST_LENGTH - 1]);
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.Resources;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CrxInventoryIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path copyCrx(CrxVersion version) throws Exception {
+        Path crxFile = temporaryFolder.getRoot().toPath().resolve("make_page_red." + version.name().toLowerCase());
+        Files.write(crxFile, Resources.toByteArray(Tests.getMakePageRedCrxResource(version)));
+        return crxFile;
+    }
+
+    @Test
+    public void get_persistsAcrossReopen() throws Exception {
+        Path indexFile = temporaryFolder.getRoot().toPath().resolve("crx.idx");
+        Path crx2File = copyCrx(CrxVersion.CRX2), crx3File = copyCrx(CrxVersion.CRX3);
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            assertNull("before indexing", index.getIfPresent(crx3File));
+            index.get(crx2File);
+            index.get(crx3File);
+            assertEquals("size", 2, index.size());
+        }
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            assertEquals("size after reopen", 2, index.size());
+            for (Path crxFile : new Path[]{crx2File, crx3File}) {
+                CrxInventory expected = CrxParser.getDefault().parseInventory(crxFile);
+                CrxInventory actual = index.getIfPresent(crxFile);
+                assertNotNull("indexed " + crxFile, actual);
+                assertEquals("metadata", expected.metadata(), actual.metadata());
+                assertEquals("segments", describe(expected.streamSegments()), describe(actual.streamSegments()));
+            }
+        }
+    }
+
+    @Test
+    public void get_persistsCustomCrx3Header() throws Exception {
+        Path indexFile = temporaryFolder.getRoot().toPath().resolve("crx.idx");
+        Path crxFile = copyCrx(CrxVersion.CRX3);
+        CrxParser parser = crxInputStream -> {
+            CrxInventory inventory = CrxParser.getDefault().parseInventory(crxInputStream);
+            CrxMetadata metadata = inventory.metadata();
+            ImmutableMultimap.Builder<CrxProofAlgorithm, AsymmetricKeyProof> proofs = ImmutableMultimap.builder();
+            for (AsymmetricKeyProofContainer container : metadata.getFileHeader().getAllAsymmetricKeyProofs()) {
+                proofs.put(container.algorithm(), container.proof());
+            }
+            CrxFileHeader fileHeader = new MapFileHeader(proofs.build());
+            return new BasicCrxInventory(new BufferedCrxMetadata(metadata.getMagicNumber(), metadata.getCrxVersion(), fileHeader, metadata.getId()), inventory.streamSegments());
+        };
+        CrxInventory expected;
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile, parser)) {
+            expected = index.get(crxFile);
+        }
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile, parser)) {
+            CrxInventory actual = index.getIfPresent(crxFile);
+            assertNotNull("indexed", actual);
+            assertEquals("id", expected.metadata().getId(), actual.metadata().getId());
+            for (Crx3ProofAlgorithm algorithm : Crx3ProofAlgorithm.values()) {
+                assertEquals("proofs " + algorithm, expected.metadata().getFileHeader().getAsymmetricKeyProofs(algorithm), actual.metadata().getFileHeader().getAsymmetricKeyProofs(algorithm));
+            }
+        }
+    }
+
+    @Test
+    public void getIfPresent_modified() throws Exception {
+        Path indexFile = temporaryFolder.getRoot().toPath().resolve("crx.idx");
+        Path crxFile = copyCrx(CrxVersion.CRX3);
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            index.get(crxFile);
+            assertNotNull(index.getIfPresent(crxFile));
+            Files.setLastModifiedTime(crxFile, FileTime.fromMillis(Files.getLastModifiedTime(crxFile).toMillis() - 60000));
+            assertNull("after modification", index.getIfPresent(crxFile));
+            assertNotNull("reparsed", index.get(crxFile));
+            assertNotNull(index.getIfPresent(crxFile));
+        }
+    }
+
+    @Test
+    public void open_tornRecord() throws Exception {
+        Path indexFile = temporaryFolder.getRoot().toPath().resolve("crx.idx");
+        Path crx2File = copyCrx(CrxVersion.CRX2), crx3File = copyCrx(CrxVersion.CRX3);
+        long lengthAfterFirst;
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            index.get(crx2File);
+            lengthAfterFirst = Files.size(indexFile);
+            index.get(crx3File);
+        }
+        byte[] indexBytes = Files.readAllBytes(indexFile);
+        Files.write(indexFile, Arrays.copyOf(indexBytes, indexBytes.length - 10));
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            assertEquals("size", 1, index.size());
+            assertNotNull(index.getIfPresent(crx2File));
+            assertNull(index.getIfPresent(crx3File));
+        }
+        assertEquals("truncated to last valid record", lengthAfterFirst, Files.size(indexFile));
+    }
+
+    @Test
+    public void compact() throws Exception {
+        Path indexFile = temporaryFolder.getRoot().toPath().resolve("crx.idx");
+        Path crxFile = copyCrx(CrxVersion.CRX3);
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            for (int i = 1; i <= 5; i++) {
+                Files.setLastModifiedTime(crxFile, FileTime.fromMillis(i * 1000000L));
+                index.get(crxFile);
+            }
+            long before = Files.size(indexFile);
+            index.compact();
+            assertTrue("compacted", Files.size(indexFile) < before);
+            assertNotNull(index.getIfPresent(crxFile));
+            index.get(copyCrx(CrxVersion.CRX2));
+        }
+        try (CrxInventoryIndex index = CrxInventoryIndex.open(indexFile)) {
+            assertEquals("size", 2, index.size());
+        }
+    }
+
+    private static List<String> describe(List<StreamSegment> segments) {
+        return segments.stream().map(s -> String.format("%s[%d,%d)", s.label(), s.start(), s.end())).collect(Collectors.toList());
+    }
+}
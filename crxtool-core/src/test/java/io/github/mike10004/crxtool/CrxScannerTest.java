@@ -0,0 +1,73 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.io.Resources;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CrxScannerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void scan() throws Exception {
+        Path root = temporaryFolder.newFolder().toPath();
+        int numCopies = 10;
+        for (int i = 0; i < numCopies; i++) {
+            for (CrxVersion version : CrxVersion.values()) {
+                Path crxFile = root.resolve(String.format("d%d/make_page_red-%d.%s", i % 3, i, version.name().toLowerCase()));
+                Files.createDirectories(crxFile.getParent());
+                Files.write(crxFile, Resources.toByteArray(Tests.getMakePageRedCrxResource(version)));
+            }
+        }
+        Path garbageFile = root.resolve("garbage.crx");
+        Files.write(garbageFile, "this is not a crx file".getBytes(StandardCharsets.US_ASCII));
+        Files.write(root.resolve("readme.txt"), "ignored".getBytes(StandardCharsets.US_ASCII));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CrxScanResult> results;
+        try {
+            results = CrxScanner.builder()
+                    .executor(executor)
+                    .maxFilesInFlight(3)
+                    .build()
+                    .scanAll(root);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("num results", numCopies * CrxVersion.values().length + 1, results.size());
+        Map<Path, CrxScanResult> byFile = results.stream().collect(Collectors.toMap(CrxScanResult::file, Function.identity()));
+        CrxScanResult garbageResult = byFile.remove(garbageFile);
+        assertNotNull("garbage result", garbageResult);
+        assertNull("inventory", garbageResult.inventory());
+        assertTrue("failure type", garbageResult.failure() instanceof CrxParsingException);
+        byFile.values().forEach(result -> {
+            assertTrue("success " + result, result.isSuccess());
+            assertEquals("id", TestingKey.getInstance().getIdPmdecimal(), result.inventory().metadata().getId());
+        });
+    }
+
+    @Test
+    public void hasCrxExtension() {
+        assertTrue(CrxScanner.hasCrxExtension(new File("a/b.crx").toPath()));
+        assertTrue(CrxScanner.hasCrxExtension(new File("a/b.CRX3").toPath()));
+        assertFalse(CrxScanner.hasCrxExtension(new File("a/b.zip").toPath()));
+    }
+}
@@ -1,9 +1,11 @@
 package io.github.mike10004.crxtool;
 
+import com.google.common.io.BaseEncoding;
 import org.junit.Test;
 
 import java.io.StringReader;
 import java.security.KeyPair;
+import java.security.spec.InvalidKeySpecException;
 
 import static org.junit.Assert.*;
 
@@ -17,4 +19,57 @@ public class KeyPairsTest {
         assertNotNull("keyPair", keyPair);
     }
 
-}
\ No newline at end of file
+    /**
+     * P-256 private key written by {@code openssl pkcs8 -topk8}, which includes the public key.
+     */
+    private static final String OPENSSL_EC_PRIVATE_KEY_BASE64 = "MIGHAgEAMBMGByqGSM49AgEGCCqGSM49AwEHBG0wawIBAQQgEBVngN8Q2fnTpZC/Tz4gYQKJ1gMe2WPl391FvNclC0ehRANCAAQpscknNYynfwyHx+u8Nl5TJck+BaFWgC28HEFCiumsuAbNMLioEjAWQudnniDM6zaXAxJuKl56s/SjWArUvQ0y";
+
+    /**
+     * Public key of {@link #OPENSSL_EC_PRIVATE_KEY_BASE64}, from {@code openssl pkey -pubout}.
+     */
+    private static final String OPENSSL_EC_PUBLIC_KEY_BASE64 = "MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEKbHJJzWMp38Mh8frvDZeUyXJPgWhVoAtvBxBQorprLgGzTC4qBIwFkLnZ54gzOs2lwMSbipeerP0o1gK1L0NMg==";
+
+    /**
+     * P-384 private key written by {@code openssl pkcs8 -topk8}.
+     */
+    private static final String OPENSSL_P384_PRIVATE_KEY_BASE64 = "MIG2AgEAMBAGByqGSM49AgEGBSuBBAAiBIGeMIGbAgEBBDA8yZcKZ3OEHK81t8X11lOoeLr0xdaS3IBRuC386Y0q+lb0WfNJaRtg9I4SzsRqrZihZANiAARaR0MELhlPvhqUyB+kfKpC1SnjGseB7TcShMhE55mBlBxIjG1OFm717BVwlRgCMxbpeesb5pFn5gX8waq0WoabfDSMQCBBet62RJWgZct72Yzx9Dnhc83mRzljgnYfCcI=";
+
+    @Test
+    public void loadEcKeyPairFromPrivateKeyBytes() throws Exception {
+        KeyPair loaded = KeyPairs.loadEcKeyPairFromPrivateKeyBytes(BaseEncoding.base64().decode(OPENSSL_EC_PRIVATE_KEY_BASE64));
+        assertEquals("public key", OPENSSL_EC_PUBLIC_KEY_BASE64, KeyPairs.encodePublicKeyBase64(loaded));
+    }
+
+    @Test(expected = InvalidKeySpecException.class)
+    public void loadEcKeyPairFromPrivateKeyBytes_noPublicKey() throws Exception {
+        KeyPair generated = Tests.generateEcKeyPair(1L);
+        KeyPairs.loadEcKeyPairFromPrivateKeyBytes(generated.getPrivate().getEncoded());
+    }
+
+    @Test(expected = InvalidKeySpecException.class)
+    public void loadEcKeyPairFromPrivateKeyBytes_otherCurve() throws Exception {
+        KeyPairs.loadEcKeyPairFromPrivateKeyBytes(BaseEncoding.base64().decode(OPENSSL_P384_PRIVATE_KEY_BASE64));
+    }
+
+    @Test
+    public void loadEcKeyPair() throws Exception {
+        KeyPair generated = Tests.generateEcKeyPair(1L);
+        KeyPair loaded = KeyPairs.loadEcKeyPair(generated.getPrivate().getEncoded(), generated.getPublic().getEncoded());
+        assertArrayEquals("public key", generated.getPublic().getEncoded(), loaded.getPublic().getEncoded());
+    }
+
+    @Test(expected = InvalidKeySpecException.class)
+    public void loadEcKeyPair_mismatched() throws Exception {
+        KeyPair first = Tests.generateEcKeyPair(1L), second = Tests.generateEcKeyPair(2L);
+        KeyPairs.loadEcKeyPair(first.getPrivate().getEncoded(), second.getPublic().getEncoded());
+    }
+
+    @Test
+    public void loadKeyPairFromPrivateKeyBytes() throws Exception {
+        KeyPair rsa = Tests.generateRsaKeyPair(2L);
+        assertEquals("RSA", KeyPairs.loadKeyPairFromPrivateKeyBytes(rsa.getPrivate().getEncoded()).getPublic().getAlgorithm());
+        KeyPair ec = KeyPairs.loadKeyPairFromPrivateKeyBytes(BaseEncoding.base64().decode(OPENSSL_EC_PRIVATE_KEY_BASE64));
+        assertEquals("EC public key", OPENSSL_EC_PUBLIC_KEY_BASE64, KeyPairs.encodePublicKeyBase64(ec));
+    }
+
+}
@@ -0,0 +1,108 @@
+package io.github.mike10004.crxtool;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProviderCachingSignerTest {
+
+    private static final String HASH_FUNCTION = "SHA256", CRYPTO_ALGORITHM = "RSA";
+
+    @Test
+    public void sign_matchesBasicSigner() throws Exception {
+        KeyPair keyPair = Tests.generateRsaKeyPair(1L);
+        Signer signer = new ProviderCachingSigner(HASH_FUNCTION, CRYPTO_ALGORITHM);
+        Signer basic = new BasicSigner(HASH_FUNCTION, CRYPTO_ALGORITHM);
+        for (int i = 0; i < 3; i++) {
+            byte[] input = ("input " + i).getBytes(StandardCharsets.US_ASCII);
+            assertArrayEquals("byte array " + i, basic.sign(input, keyPair.getPrivate()), signer.sign(input, keyPair.getPrivate()));
+            assertArrayEquals("input source " + i, basic.sign(input, keyPair.getPrivate()), signer.sign(InputSource.wrap(input), keyPair.getPrivate()));
+        }
+    }
+
+    @Test
+    public void sign_providerLookedUpOnceAndKeysNotRetained() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        ProviderCachingSigner signer = new ProviderCachingSigner(HASH_FUNCTION, CRYPTO_ALGORITHM) {
+            @Override
+            Provider lookUpProvider() throws NoSuchAlgorithmException {
+                lookups.incrementAndGet();
+                return super.lookUpProvider();
+            }
+        };
+        byte[] input = "input".getBytes(StandardCharsets.US_ASCII);
+        for (long seed = 2; seed < 5; seed++) {
+            signer.sign(input, Tests.generateRsaKeyPair(seed).getPrivate());
+        }
+        assertEquals("lookups", 1, lookups.get());
+        for (Class<?> clazz = ProviderCachingSigner.class; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    Object value = field.get(signer);
+                    assertFalse(field + " retains " + value, value instanceof Key || value instanceof Signature);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void initSign_sameKeyInterleaved() throws Exception {
+        KeyPair keyPair = Tests.generateRsaKeyPair(6L);
+        Signer signer = new ProviderCachingSigner(HASH_FUNCTION, CRYPTO_ALGORITHM);
+        Signer basic = new BasicSigner(HASH_FUNCTION, CRYPTO_ALGORITHM);
+        byte[] outerInput = "outer".getBytes(StandardCharsets.US_ASCII), innerInput = "inner".getBytes(StandardCharsets.US_ASCII);
+        Signature outer = signer.initSign(keyPair.getPrivate());
+        outer.update(outerInput);
+        // as when packing is nested on the same thread
+        Signature inner = signer.initSign(keyPair.getPrivate());
+        assertNotSame(outer, inner);
+        inner.update(innerInput);
+        assertArrayEquals("inner", basic.sign(innerInput, keyPair.getPrivate()), inner.sign());
+        assertArrayEquals("outer", basic.sign(outerInput, keyPair.getPrivate()), outer.sign());
+    }
+
+    @Test
+    public void sign_concurrent() throws Exception {
+        KeyPair keyPair = Tests.generateRsaKeyPair(5L);
+        Signer signer = new ProviderCachingSigner(HASH_FUNCTION, CRYPTO_ALGORITHM);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                byte[] input = ("input " + i).getBytes(StandardCharsets.US_ASCII);
+                results.add(executor.submit(() -> {
+                    byte[] signatureBytes = signer.sign(input, keyPair.getPrivate());
+                    Signature verifier = Signature.getInstance("SHA256withRSA");
+                    verifier.initVerify(keyPair.getPublic());
+                    verifier.update(input);
+                    return verifier.verify(signatureBytes);
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue("verified", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -107,6 +107,12 @@ public class Tests {
         return KeyPairs.generateRsaKeyPair(random);
     }
 
+    public static KeyPair generateEcKeyPair(long seed) throws NoSuchAlgorithmException {
+        byte[] seedBytes = Longs.toByteArray(seed);
+        SecureRandom random = new SecureRandom(seedBytes);
+        return KeyPairs.generateEcKeyPair(random);
+    }
+
     public static AsymmetricKeyProof getOnlyProof(CrxMetadata md) {
         List<AsymmetricKeyProofContainer> containers = md.getFileHeader().getAllAsymmetricKeyProofs();
         checkArgument(containers.size() == 1, "header must contain exactly one proof: %s", containers);
@@ -0,0 +1,303 @@
+package io.github.mike10004.crxtool;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import io.github.mike10004.crxtool.testing.Unzippage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZippingTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Map<String, byte[]> createFiles(Path parent, int numFiles) throws Exception {
+        Random random = new Random(ZippingTest.class.getName().hashCode());
+        Map<String, byte[]> groundTruth = new HashMap<>();
+        for (int i = 0; i < numFiles; i++) {
+            String relativePath = String.format("d%d/d%d/f%d.dat", i % 3, i % 7, i);
+            byte[] bytes;
+            if (i % 2 == 0) {
+                bytes = new byte[random.nextInt(64 * 1024)];
+                random.nextBytes(bytes);
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (int j = random.nextInt(1000); j >= 0; j--) {
+                    sb.append("console.log('line ").append(j).append("');\n");
+                }
+                bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            File f = parent.resolve(relativePath).toFile();
+            Files.createParentDirs(f);
+            Files.write(bytes, f);
+            groundTruth.put(relativePath, bytes);
+        }
+        File emptyFile = parent.resolve("empty.txt").toFile();
+        Files.touch(emptyFile);
+        groundTruth.put("empty.txt", new byte[0]);
+        java.nio.file.Files.createDirectories(parent.resolve("emptydir"));
+        return groundTruth;
+    }
+
+    @Test
+    public void zipDirectory_parallel() throws Exception {
+        zipDirectory_parallel(new ZipConfig(null, null, "parallel"), ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void zipDirectory_parallel_stored() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            zipDirectory_parallel(new ZipConfig(ZipEntry.STORED, null, null), executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void zipDirectory_parallel_smallBudget() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        Map<String, byte[]> groundTruth = createFiles(parent, 30);
+        // most of the random files are larger than the budget and are spilled to disk
+        ParallelZipping zipping = new ParallelZipping(ForkJoinPool.commonPool(), 4, 16 * 1024);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        zipping.zipDirectory(parent, null, buffer);
+        checkArchive(groundTruth, null, buffer.toByteArray());
+    }
+
+    private void zipDirectory_parallel(@Nullable ZipConfig zipConfig, Executor executor) throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        Map<String, byte[]> groundTruth = createFiles(parent, 50);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Zipping.zipDirectory(parent, zipConfig, buffer, executor);
+        checkArchive(groundTruth, zipConfig, buffer.toByteArray());
+    }
+
+    private void checkArchive(Map<String, byte[]> groundTruth, @Nullable ZipConfig zipConfig, byte[] zipBytes) throws Exception {
+        Unzippage unzippage = Unzippage.unzip(new ByteArrayInputStream(zipBytes));
+        assertEquals("file entries", groundTruth.keySet(), ImmutableSet.copyOf(unzippage.fileEntries()));
+        assertTrue("empty dir entry present", ImmutableSet.copyOf(unzippage.directoryEntries()).contains("emptydir/"));
+        for (String entryName : groundTruth.keySet()) {
+            ByteSource actualBytes = unzippage.getFileBytes(entryName);
+            assertNotNull("bytes present for " + entryName, actualBytes);
+            assertArrayEquals("content of " + entryName, groundTruth.get(entryName), actualBytes.read());
+        }
+        File zipFile = temporaryFolder.newFile();
+        Files.write(zipBytes, zipFile);
+        try (ZipFile zf = new ZipFile(zipFile)) {
+            assertEquals("zip comment", zipConfig == null ? null : zipConfig.comment, zf.getComment());
+            for (String entryName : groundTruth.keySet()) {
+                ZipEntry entry = zf.getEntry(entryName);
+                assertNotNull(entryName, entry);
+                if (zipConfig != null && zipConfig.method != null) {
+                    assertEquals("method", zipConfig.method.intValue(), entry.getMethod());
+                }
+                byte[] actual;
+                try (InputStream in = zf.getInputStream(entry)) {
+                    actual = ByteStreams.toByteArray(in);
+                }
+                assertArrayEquals("content of " + entryName, groundTruth.get(entryName), actual);
+            }
+        }
+    }
+
+    @Test
+    public void zipDirectory_outputStream() throws Exception {
+        zipDirectory_outputStream(null);
+        zipDirectory_outputStream(new ZipConfig(null, null, "streamed"));
+        zipDirectory_outputStream(new ZipConfig(ZipEntry.STORED, null, null));
+    }
+
+    private void zipDirectory_outputStream(@Nullable ZipConfig zipConfig) throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        Map<String, byte[]> groundTruth = createFiles(parent, 20);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Zipping.zipDirectory(parent, zipConfig, buffer);
+        checkArchive(groundTruth, zipConfig, buffer.toByteArray());
+    }
+
+    @Test
+    public void zipDirectory_path() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        Map<String, byte[]> groundTruth = createFiles(parent, 20);
+        ZipConfig zipConfig = new ZipConfig(ZipEntry.STORED, null, "to file");
+        Path zipFile = temporaryFolder.newFile().toPath();
+        InputSource source = Zipping.zipDirectory(parent, zipConfig, zipFile);
+        byte[] zipBytes = source.read();
+        assertArrayEquals("source reads file", java.nio.file.Files.readAllBytes(zipFile), zipBytes);
+        checkArchive(groundTruth, zipConfig, zipBytes);
+    }
+
+    @Test
+    public void zipDirectory_level() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        createFiles(parent, 20);
+        byte[] uncompressed = Zipping.zipDirectory(parent, new ZipConfig(null, Deflater.NO_COMPRESSION, null));
+        byte[] compressed = Zipping.zipDirectory(parent, new ZipConfig(null, Deflater.BEST_COMPRESSION, null));
+        assertTrue(String.format("expect %d < %d", compressed.length, uncompressed.length), compressed.length < uncompressed.length);
+    }
+
+    @Test(expected = ZipException.class)
+    public void zipWriter_rejectsEntryTooLarge() throws Exception {
+        ZipWriter writer = new ZipWriter(ByteStreams.nullOutputStream());
+        writer.write(new ZipWriter.Entry("big.dat", ZipEntry.DEFLATED, 0, 16, 5L << 30, ZipWriter.DETERMINISTIC_DOS_TIME, InputSource.wrap(new byte[16])));
+    }
+
+    @Test
+    public void repack() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        Map<String, byte[]> groundTruth = createFiles(parent, 20);
+        File originalZip = temporaryFolder.newFile();
+        Zipping.zipDirectory(parent, new ZipConfig(null, null, "original"), originalZip.toPath());
+        byte[] modified = "modified".getBytes(StandardCharsets.UTF_8), added = "added".getBytes(StandardCharsets.UTF_8);
+        java.nio.file.Files.write(parent.resolve("d1/d1/f1.dat"), modified);
+        groundTruth.put("d1/d1/f1.dat", modified);
+        java.nio.file.Files.delete(parent.resolve("d2/d2/f2.dat"));
+        groundTruth.remove("d2/d2/f2.dat");
+        java.nio.file.Files.write(parent.resolve("added.txt"), added);
+        groundTruth.put("added.txt", added);
+        Set<String> changed = ImmutableSet.of("d1/d1/f1.dat", "d2/d2/f2.dat", "added.txt");
+        File repackedZip = temporaryFolder.newFile();
+        try (OutputStream out = new FileOutputStream(repackedZip)) {
+            Zipping.repack(originalZip.toPath(), parent, changed, null, out);
+        }
+        try (ZipFile original = new ZipFile(originalZip); ZipFile repacked = new ZipFile(repackedZip)) {
+            assertEquals("comment", "original", repacked.getComment());
+            assertNull("deleted entry", repacked.getEntry("d2/d2/f2.dat"));
+            for (String entryName : groundTruth.keySet()) {
+                ZipEntry entry = repacked.getEntry(entryName);
+                assertNotNull(entryName, entry);
+                try (InputStream in = repacked.getInputStream(entry)) {
+                    assertArrayEquals("content of " + entryName, groundTruth.get(entryName), ByteStreams.toByteArray(in));
+                }
+                if (!changed.contains(entryName)) {
+                    ZipEntry originalEntry = original.getEntry(entryName);
+                    assertEquals("crc of " + entryName, originalEntry.getCrc(), entry.getCrc());
+                    assertEquals("compressed size of " + entryName, originalEntry.getCompressedSize(), entry.getCompressedSize());
+                    assertEquals("time of " + entryName, originalEntry.getTime(), entry.getTime());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void repack_entryOutsideExtensionDir() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        createFiles(parent, 5);
+        File originalZip = temporaryFolder.newFile();
+        Zipping.zipDirectory(parent, null, originalZip.toPath());
+        java.nio.file.Files.write(parent.getParent().resolve("outside.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            Zipping.repack(originalZip.toPath(), parent, ImmutableSet.of("../outside.txt"), null, buffer);
+            fail("expected failure");
+        } catch (ZipException e) {
+            assertTrue("message: " + e.getMessage(), e.getMessage().contains("../outside.txt"));
+        }
+        assertEquals("bytes written", 0, buffer.size());
+    }
+
+    @Test
+    public void repack_crx() throws Exception {
+        File crxFile = Tests.getMakePageRedCrxFile(CrxVersion.CRX3);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Zipping.repack(crxFile.toPath(), temporaryFolder.getRoot().toPath(), Collections.emptySet(), null, buffer);
+        Unzippage repacked = Unzippage.unzip(new ByteArrayInputStream(buffer.toByteArray()));
+        try (CrxArchive archive = CrxArchive.open(crxFile.toPath())) {
+            for (ZipEntry entry : archive.entries()) {
+                if (!entry.isDirectory()) {
+                    ByteSource actual = repacked.getFileBytes(entry.getName());
+                    assertNotNull(entry.getName(), actual);
+                    try (InputStream in = archive.getInputStream(entry)) {
+                        assertArrayEquals("content of " + entry.getName(), ByteStreams.toByteArray(in), actual.read());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void zipDirectory_deterministic() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        createFiles(parent, 30);
+        byte[] first = Zipping.zipDirectory(parent, ZipConfig.deterministic());
+        byte[] parallelFirst = zipDirectoryInParallel(parent, ZipConfig.deterministic());
+        java.nio.file.Files.setLastModifiedTime(parent.resolve("empty.txt"), FileTime.fromMillis(System.currentTimeMillis() - 86400000L));
+        byte[] second = Zipping.zipDirectory(parent, ZipConfig.deterministic());
+        assertArrayEquals("archives", first, second);
+        assertArrayEquals("parallel archives", parallelFirst, zipDirectoryInParallel(parent, ZipConfig.deterministic()));
+        for (byte[] zipBytes : new byte[][]{first, parallelFirst}) {
+            File zipFile = temporaryFolder.newFile();
+            Files.write(zipBytes, zipFile);
+            try (ZipFile zf = new ZipFile(zipFile)) {
+                List<String> names = zf.stream().map(ZipEntry::getName).collect(Collectors.toList());
+                assertEquals("entry order", Ordering.natural().sortedCopy(names), names);
+                Set<Long> times = zf.stream().map(ZipEntry::getTime).collect(Collectors.toSet());
+                assertEquals("times", Collections.singleton(ZipWriter.fromDosTime(ZipWriter.DETERMINISTIC_DOS_TIME)), times);
+                assertTrue("no extra fields", zf.stream().allMatch(entry -> entry.getExtra() == null));
+            }
+        }
+    }
+
+    private static byte[] zipDirectoryInParallel(Path directory, ZipConfig zipConfig) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Zipping.zipDirectory(directory, zipConfig, buffer, ForkJoinPool.commonPool());
+        return buffer.toByteArray();
+    }
+
+    @Test
+    public void zipDirectory_deterministic_stored() throws Exception {
+        Path parent = temporaryFolder.newFolder().toPath();
+        Map<String, byte[]> groundTruth = createFiles(parent, 10);
+        byte[] zipBytes = Zipping.zipDirectory(parent, new ZipConfig(ZipEntry.STORED, null, null, true));
+        File zipFile = temporaryFolder.newFile();
+        Files.write(zipBytes, zipFile);
+        try (ZipFile zf = new ZipFile(zipFile)) {
+            for (String entryName : groundTruth.keySet()) {
+                ZipEntry entry = zf.getEntry(entryName);
+                assertEquals("method", ZipEntry.STORED, entry.getMethod());
+                try (InputStream in = zf.getInputStream(entry)) {
+                    assertArrayEquals("content of " + entryName, groundTruth.get(entryName), ByteStreams.toByteArray(in));
+                }
+            }
+        }
+    }
+}
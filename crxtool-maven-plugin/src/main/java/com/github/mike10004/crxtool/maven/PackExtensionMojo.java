@@ -2,6 +2,7 @@ package com.github.mike10004.crxtool.maven;
 
 import io.github.mike10004.crxtool.CrxPacker;
 import io.github.mike10004.crxtool.KeyPairs;
+import io.github.mike10004.crxtool.ZipConfig;
 import io.github.mike10004.crxtool.Zipping;
 import io.github.mike10004.crxtool.PemParser;
 import org.apache.maven.plugin.AbstractMojo;
@@ -43,6 +44,7 @@ public class PackExtensionMojo extends AbstractMojo {
 
     /**
      * File containing the private key for extension signing in PEM format.
+     * The key may be an RSA key or, for CRX3 output, a P-256 elliptic curve key.
      */
     @Parameter(property = PROP_PREFIX + "privateKey")
     private File privateKey;
@@ -70,6 +72,14 @@ public class PackExtensionMojo extends AbstractMojo {
     @Parameter(property = PROP_PREFIX + "generateKeyIfAbsent")
     private boolean generateKeyIfAbsent;
 
+    /**
+     * Flag that specifies whether the archive is to be reproducible, meaning
+     * that the same source files always produce the same archive bytes.
+     * Entries are sorted by name and given a fixed timestamp.
+     */
+    @Parameter(property = PROP_PREFIX + "deterministic")
+    private boolean deterministic;
+
     @Override
     public void execute() throws MojoExecutionException {
         File outputFile = getOutputFile();
@@ -88,17 +98,17 @@ public class PackExtensionMojo extends AbstractMojo {
                 try (Reader reader = new InputStreamReader(new FileInputStream(privateKey_), StandardCharsets.US_ASCII)) {
                     keyBytes = PemParser.getInstance().extractBytes(reader);
                 }
-                keyPair = KeyPairs.loadRsaKeyPairFromPrivateKeyBytes(keyBytes);
+                keyPair = KeyPairs.loadKeyPairFromPrivateKeyBytes(keyBytes);
             }
             Path extensionDir = sourceDirectory.toPath();
+            ZipConfig zipConfig = isDeterministic() ? ZipConfig.deterministic() : null;
             com.google.common.io.Files.createParentDirs(outputFile);
             if (excludeHeader) {
-                byte[] zipBytes = Zipping.zipDirectory(extensionDir, null);
-                java.nio.file.Files.write(outputFile.toPath(), zipBytes);
+                Zipping.zipDirectory(extensionDir, zipConfig, outputFile.toPath());
             } else {
                 CrxPacker packer = createPacker();
                 try (OutputStream outputStream = new FileOutputStream(outputFile)) {
-                    packer.packExtension(extensionDir, keyPair, outputStream);
+                    packer.packExtension(extensionDir, zipConfig, keyPair, outputStream);
                 }
             }
             getLog().info(String.format("execute: outputFile = %s (%d bytes)", outputFile, outputFile.length()));
@@ -161,4 +171,12 @@ public class PackExtensionMojo extends AbstractMojo {
     public void setGenerateKeyIfAbsent(boolean generateKeyIfAbsent) {
         this.generateKeyIfAbsent = generateKeyIfAbsent;
     }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
 }
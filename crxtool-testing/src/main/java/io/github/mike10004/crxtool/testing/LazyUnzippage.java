@@ -0,0 +1,103 @@
+package io.github.mike10004.crxtool.testing;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Unzippage backed by a zip file that is read on demand. Only the central directory
+ * is read when an instance is opened; entry data is inflated each time a byte source
+ * is read, so no entry is held in memory. Byte sources may be read concurrently.
+ * The zip file remains open until this instance is closed, after which the
+ * byte sources can no longer be read.
+ */
+public class LazyUnzippage extends Unzippage implements Closeable {
+
+    private final ZipFile zipFile;
+    private final ImmutableList<String> directoryEntries;
+    private final ImmutableMap<String, ZipEntry> fileEntries;
+
+    private LazyUnzippage(ZipFile zipFile) {
+        this.zipFile = requireNonNull(zipFile);
+        ImmutableList.Builder<String> directoryEntries = ImmutableList.builder();
+        Map<String, ZipEntry> fileEntries = new LinkedHashMap<>();
+        zipFile.stream().forEachOrdered(entry -> {
+            if (entry.isDirectory()) {
+                directoryEntries.add(entry.getName());
+            } else {
+                fileEntries.putIfAbsent(entry.getName(), entry);
+            }
+        });
+        this.directoryEntries = directoryEntries.build();
+        this.fileEntries = ImmutableMap.copyOf(fileEntries);
+    }
+
+    /**
+     * Opens a zip file. Data preceding the zip archive, such as a CRX header, is tolerated.
+     * @param zipPathname pathname of the zip file
+     * @return a new instance, which must be closed
+     * @throws IOException if the file is not a zip file or reading fails
+     */
+    public static LazyUnzippage open(File zipPathname) throws IOException {
+        return new LazyUnzippage(new ZipFile(zipPathname));
+    }
+
+    @Override
+    public Iterable<String> fileEntries() {
+        return fileEntries.keySet();
+    }
+
+    @Override
+    public Iterable<String> directoryEntries() {
+        return directoryEntries;
+    }
+
+    @Override
+    @Nullable
+    public ByteSource getFileBytes(String fileEntry) {
+        ZipEntry entry = fileEntries.get(fileEntry);
+        return entry == null ? null : new EntryByteSource(entry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    private class EntryByteSource extends ByteSource {
+
+        private final ZipEntry entry;
+
+        public EntryByteSource(ZipEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return zipFile.getInputStream(entry);
+        }
+
+        @Override
+        public Optional<Long> sizeIfKnown() {
+            return entry.getSize() >= 0 ? Optional.of(entry.getSize()) : Optional.absent();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LazyUnzippage.getFileBytes(%s)", entry.getName());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.mike10004.crxtool.testing;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
+import com.google.common.math.LongMath;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Unzips a zip file by planning buffers from the central directory before inflating anything.
+ * @see Unzippage#unzipUsingCentralDirectory(java.io.File, UnzipConfig)
+ */
+class PresizedUnzipping {
+
+    private static final int MAX_ARENA_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * Upper bound of the ratio of inflated length to deflated length that the deflate format allows.
+     */
+    private static final long MAX_DEFLATE_RATIO = 1032;
+
+    private final UnzipConfig config;
+
+    public PresizedUnzipping(UnzipConfig config) {
+        this.config = requireNonNull(config);
+    }
+
+    /**
+     * Unzips a zip file.
+     * @param zipFile the zip file
+     * @param archiveLength length of the file, against which declared sizes are checked
+     * @return the unzippage
+     * @throws IOException on I/O error or if the file is invalid or breaches a limit
+     */
+    public Unzippage unzip(ZipFile zipFile, long archiveLength) throws IOException {
+        List<String> directoryEntries = new ArrayList<>();
+        List<PlannedEntry> plan = new ArrayList<>();
+        long totalUncompressedSize = 0, totalCompressedSize = 0, inMemoryTotalSize = 0;
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory()) {
+                directoryEntries.add(entry.getName());
+                continue;
+            }
+            long size = entry.getSize();
+            if (size < 0) {
+                throw new Unzippage.UnzipException("size of entry not declared: " + entry.getName());
+            }
+            if (size > config.entryBufferMaxLength) {
+                throw new Unzippage.UnzipException("entry size greater than max buffer length: " + size);
+            }
+            checkDeclaredSizes(entry);
+            // entries' data cannot overlap, so their compressed sizes must add up to no more than the file
+            totalCompressedSize = LongMath.checkedAdd(totalCompressedSize, entry.getCompressedSize());
+            if (totalCompressedSize > archiveLength) {
+                throw new Unzippage.UnzipException("declared compressed sizes exceed archive length at entry " + entry.getName());
+            }
+            Unzippage.checkCompressionRatio(entry, config);
+            totalUncompressedSize = LongMath.checkedAdd(totalUncompressedSize, size);
+            if (totalUncompressedSize > config.maxTotalUncompressedSize) {
+                throw new Unzippage.UnzipException("max total uncompressed size breached: " + totalUncompressedSize);
+            }
+            boolean inMemory = !config.isSpillingEnabled()
+                    || (size <= config.inMemoryEntryThreshold && inMemoryTotalSize + size <= config.maxInMemoryTotalSize);
+            long arenaOffset = -1;
+            if (inMemory) {
+                arenaOffset = inMemoryTotalSize;
+                inMemoryTotalSize += size;
+            }
+            plan.add(new PlannedEntry(entry, arenaOffset));
+        }
+        // one array for all in-memory entries if possible, to avoid an allocation per entry
+        byte[] arena = inMemoryTotalSize <= MAX_ARENA_LENGTH ? new byte[(int) inMemoryTotalSize] : null;
+        Map<String, ByteSource> fileEntries = new LinkedHashMap<>();
+        List<FileBackedOutputStream> spillBuffers = new ArrayList<>();
+        try {
+            for (PlannedEntry planned : plan) {
+                fileEntries.put(planned.entry.getName(), inflate(zipFile, planned, arena, spillBuffers));
+            }
+        } catch (IOException | RuntimeException e) {
+            Unzippage.CollectionUnzippage.resetAll(spillBuffers, e);
+            throw e;
+        }
+        return new Unzippage.CollectionUnzippage(directoryEntries, fileEntries, spillBuffers);
+    }
+
+    /**
+     * Checks that the declared sizes of an entry are consistent with its compression method.
+     */
+    private static void checkDeclaredSizes(ZipEntry entry) throws Unzippage.UnzipException {
+        long size = entry.getSize(), compressedSize = entry.getCompressedSize();
+        if (compressedSize < 0) {
+            throw new Unzippage.UnzipException("compressed size of entry not declared: " + entry.getName());
+        }
+        if (entry.getMethod() == ZipEntry.STORED && size != compressedSize) {
+            throw new Unzippage.UnzipException("size of stored entry differs from compressed size: " + entry.getName());
+        }
+        if (entry.getMethod() == ZipEntry.DEFLATED && size > LongMath.saturatedMultiply(compressedSize, MAX_DEFLATE_RATIO)) {
+            throw new Unzippage.UnzipException("declared size too large for compressed size of entry " + entry.getName());
+        }
+    }
+
+    private static ByteSource inflate(ZipFile zipFile, PlannedEntry planned, @Nullable byte[] arena, List<FileBackedOutputStream> spillBuffers) throws IOException {
+        ZipEntry entry = planned.entry;
+        int size = (int) entry.getSize();
+        CRC32 crc = new CRC32();
+        ByteSource data;
+        try (InputStream in = new CheckedInputStream(zipFile.getInputStream(entry), crc)) {
+            if (planned.isInMemory()) {
+                byte[] buffer = arena == null ? new byte[size] : arena;
+                int offset = arena == null ? 0 : (int) planned.arenaOffset;
+                try {
+                    ByteStreams.readFully(in, buffer, offset, size);
+                } catch (EOFException e) {
+                    throw new Unzippage.UnzipException("entry shorter than declared size: " + entry.getName());
+                }
+                checkEnd(in, entry);
+                data = ByteSource.wrap(buffer).slice(offset, size);
+            } else {
+                FileBackedOutputStream buffer = new FileBackedOutputStream(0, true);
+                spillBuffers.add(buffer);
+                long numCopied;
+                try {
+                    numCopied = ByteStreams.copy(ByteStreams.limit(in, size), buffer);
+                } finally {
+                    buffer.close();
+                }
+                if (numCopied != size) {
+                    throw new Unzippage.UnzipException("entry shorter than declared size: " + entry.getName());
+                }
+                checkEnd(in, entry);
+                data = buffer.asByteSource();
+            }
+        }
+        if (crc.getValue() != entry.getCrc()) {
+            throw new Unzippage.UnzipException("checksum mismatch for entry " + entry.getName());
+        }
+        return data;
+    }
+
+    private static void checkEnd(InputStream in, ZipEntry entry) throws IOException {
+        if (in.read() != -1) {
+            throw new Unzippage.UnzipException("entry longer than declared size: " + entry.getName());
+        }
+    }
+
+    private static class PlannedEntry {
+
+        public final ZipEntry entry;
+
+        /**
+         * Position in the arena, or -1 if the entry is buffered in a temporary file.
+         */
+        public final long arenaOffset;
+
+        public PlannedEntry(ZipEntry entry, long arenaOffset) {
+            this.entry = entry;
+            this.arenaOffset = arenaOffset;
+        }
+
+        public boolean isInMemory() {
+            return arenaOffset >= 0;
+        }
+    }
+}
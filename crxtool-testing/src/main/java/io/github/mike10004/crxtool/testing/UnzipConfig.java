@@ -7,17 +7,52 @@ public class UnzipConfig {
     public static final int DEFAULT_DEFAULT_ENTRY_BUFFER_INITIAL_CAPACITY = 256;
     public static final int DEFAULT_ENTRY_BUFFER_MAX_LENGTH = Integer.MAX_VALUE;
     public static final long DEFAULT_MAX_TOTAL_UNCOMPRESSED_SIZE = LongMath.checkedMultiply(Integer.MAX_VALUE, 2);
+    public static final int DEFAULT_IN_MEMORY_ENTRY_THRESHOLD = Integer.MAX_VALUE;
+    public static final long DEFAULT_MAX_IN_MEMORY_TOTAL_SIZE = Long.MAX_VALUE;
+    public static final double DEFAULT_MAX_COMPRESSION_RATIO = Double.POSITIVE_INFINITY;
 
     public final int defaultEntryBufferInitialCapacity;
     public final int entryBufferMaxLength;
     public final long maxTotalUncompressedSize;
 
+    /**
+     * Maximum size of an entry that is held in memory. Larger entries are
+     * buffered in temporary files.
+     */
+    public final int inMemoryEntryThreshold;
+
+    /**
+     * Maximum total size of entries held in memory. Once this is reached,
+     * subsequent entries are buffered in temporary files.
+     */
+    public final long maxInMemoryTotalSize;
+
+    /**
+     * Maximum ratio of an entry's uncompressed size to its compressed size.
+     * Entries whose sizes are declared in advance are rejected before being
+     * inflated if their ratio exceeds this.
+     */
+    public final double maxCompressionRatio;
+
     private static UnzipConfig DEFAULT = builder().build();
 
     private UnzipConfig(Builder builder) {
         defaultEntryBufferInitialCapacity = builder.defaultEntryBufferInitialCapacity;
         entryBufferMaxLength = builder.entryBufferMaxLength;
         maxTotalUncompressedSize = builder.maxTotalUncompressedSize;
+        inMemoryEntryThreshold = builder.inMemoryEntryThreshold;
+        maxInMemoryTotalSize = builder.maxInMemoryTotalSize;
+        maxCompressionRatio = builder.maxCompressionRatio;
+    }
+
+    /**
+     * Checks whether any entries may be buffered in temporary files instead of memory.
+     * Temporary files are deleted when their byte sources are garbage-collected.
+     * @return true if a memory limit has been set
+     */
+    public boolean isSpillingEnabled() {
+        return inMemoryEntryThreshold != DEFAULT_IN_MEMORY_ENTRY_THRESHOLD
+                || maxInMemoryTotalSize != DEFAULT_MAX_IN_MEMORY_TOTAL_SIZE;
     }
 
     public static UnzipConfig getDefault() {
@@ -34,6 +69,9 @@ public class UnzipConfig {
         private int defaultEntryBufferInitialCapacity = DEFAULT_DEFAULT_ENTRY_BUFFER_INITIAL_CAPACITY;
         private int entryBufferMaxLength = DEFAULT_ENTRY_BUFFER_MAX_LENGTH;
         private long maxTotalUncompressedSize = DEFAULT_MAX_TOTAL_UNCOMPRESSED_SIZE;
+        private int inMemoryEntryThreshold = DEFAULT_IN_MEMORY_ENTRY_THRESHOLD;
+        private long maxInMemoryTotalSize = DEFAULT_MAX_IN_MEMORY_TOTAL_SIZE;
+        private double maxCompressionRatio = DEFAULT_MAX_COMPRESSION_RATIO;
 
         private Builder() {
         }
@@ -53,6 +91,21 @@ public class UnzipConfig {
             return this;
         }
 
+        public Builder inMemoryEntryThreshold(int val) {
+            inMemoryEntryThreshold = val;
+            return this;
+        }
+
+        public Builder maxInMemoryTotalSize(long val) {
+            maxInMemoryTotalSize = val;
+            return this;
+        }
+
+        public Builder maxCompressionRatio(double val) {
+            maxCompressionRatio = val;
+            return this;
+        }
+
         public UnzipConfig build() {
             return new UnzipConfig(this);
         }
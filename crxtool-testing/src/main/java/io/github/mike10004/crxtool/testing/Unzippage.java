@@ -1,35 +1,49 @@
 package io.github.mike10004.crxtool.testing;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
 import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
 import com.google.common.math.LongMath;
 import com.google.common.primitives.Ints;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Class that represents the result of unzipping a file. Use {@link #unzip(File)} or
- * {@link #unzip(InputStream)} create an instance.
+ * {@link #unzip(InputStream)} create an instance. These buffer every file entry in
+ * memory; use {@link LazyUnzippage#open(File)} to read entries from the file on demand.
+ * Instances that spill entries to temporary files delete them when closed.
  */
-public abstract class Unzippage {
+public abstract class Unzippage implements Closeable {
 
     protected Unzippage() {}
 
@@ -62,14 +76,26 @@ public abstract class Unzippage {
         return Iterables.concat(directoryEntries(), fileEntries());
     }
 
-    private static class CollectionUnzippage extends Unzippage {
+    /**
+     * Releases resources held by this instance, such as temporary files to which
+     * entries were spilled. Entry bytes must not be read after closing.
+     * This implementation does nothing.
+     * @throws IOException on I/O error
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    static class CollectionUnzippage extends Unzippage {
 
         private final ImmutableList<String> directoryEntries;
         private final ImmutableMap<String, ByteSource> fileEntries;
+        private final ImmutableList<FileBackedOutputStream> spillBuffers;
 
-        protected CollectionUnzippage(Iterable<String> directoryEntries, Map<String, ByteSource> fileEntries) {
+        CollectionUnzippage(Iterable<String> directoryEntries, Map<String, ByteSource> fileEntries, Iterable<FileBackedOutputStream> spillBuffers) {
             this.directoryEntries = ImmutableList.copyOf(directoryEntries);
             this.fileEntries = ImmutableMap.copyOf(fileEntries);
+            this.spillBuffers = ImmutableList.copyOf(spillBuffers);
         }
 
         @Override
@@ -87,6 +113,47 @@ public abstract class Unzippage {
         public ByteSource getFileBytes(String fileEntry) {
             return fileEntries.get(fileEntry);
         }
+
+        @Override
+        public void close() throws IOException {
+            resetAll(spillBuffers);
+        }
+
+        /**
+         * Resets each buffer, which deletes its temporary file if it has one.
+         * @param buffers the buffers
+         * @throws IOException the first exception thrown by a reset, with any others suppressed
+         */
+        static void resetAll(Iterable<FileBackedOutputStream> buffers) throws IOException {
+            IOException failure = null;
+            for (FileBackedOutputStream buffer : buffers) {
+                try {
+                    buffer.reset();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Resets buffers after unzipping has failed.
+         * @param buffers the buffers
+         * @param cause the exception that caused unzipping to fail, to which reset exceptions are added as suppressed
+         */
+        static void resetAll(Iterable<FileBackedOutputStream> buffers, Throwable cause) {
+            try {
+                resetAll(buffers);
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
     }
 
     /**
@@ -156,6 +223,33 @@ public abstract class Unzippage {
         }
     }
 
+    /**
+     * Unzips a zip file in two phases. First the central directory is read, and every
+     * entry's declared size and compression ratio are checked against the configured
+     * limits and against the length of the file before any data is inflated or any
+     * buffer is allocated, so zip bombs are rejected early. Then the
+     * entries are inflated into buffers of exactly the declared sizes, which for
+     * entries held in memory are slices of a single array when the total allows.
+     * Each entry's length and CRC-32 checksum are verified against the central directory.
+     * Data preceding the zip archive, such as a CRX header, is tolerated.
+     * @param zipPathname pathname of the zip file
+     * @param config configuration
+     * @return the unzippage
+     * @throws IOException if something goes awry
+     */
+    public static Unzippage unzipUsingCentralDirectory(File zipPathname, UnzipConfig config) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipPathname)) {
+            return new PresizedUnzipping(config).unzip(zipFile, zipPathname.length());
+        }
+    }
+
+    static void checkCompressionRatio(ZipEntry entry, UnzipConfig config) throws UnzipException {
+        long size = entry.getSize(), compressedSize = entry.getCompressedSize();
+        if (size > 0 && compressedSize >= 0 && (double) size / compressedSize > config.maxCompressionRatio) {
+            throw new UnzipException(String.format("compression ratio of entry %s exceeds limit: %d/%d", entry.getName(), size, compressedSize));
+        }
+    }
+
     /**
      * Exception thrown on unzipping errors.
      */
@@ -171,14 +265,27 @@ public abstract class Unzippage {
 
     static Unzippage unzip(ZipFacade entryProvider, UnzipConfig config) throws IOException {
         List<String> directoryEntries = new ArrayList<>();
-        Map<String, byte[]> fileEntries = new HashMap<>();
+        Map<String, ByteSource> fileEntries = new HashMap<>();
+        List<FileBackedOutputStream> spillBuffers = new ArrayList<>();
+        try {
+            unzip(entryProvider, config, directoryEntries, fileEntries, spillBuffers);
+        } catch (IOException | RuntimeException e) {
+            CollectionUnzippage.resetAll(spillBuffers, e);
+            throw e;
+        }
+        return new CollectionUnzippage(directoryEntries, fileEntries, spillBuffers);
+    }
+
+    private static void unzip(ZipFacade entryProvider, UnzipConfig config, List<String> directoryEntries, Map<String, ByteSource> fileEntries, List<FileBackedOutputStream> spillBuffers) throws IOException {
         ZipEntrySession session;
         long totalUncompressedSize = 0;
+        long inMemoryTotalSize = 0;
         while ((session = entryProvider.next()) != null) {
             ZipEntry entry = requireNonNull(session.getEntry(), "session.getEntry()");
             if (entry.isDirectory()) {
                 directoryEntries.add(entry.getName());
             } else {
+                checkCompressionRatio(entry, config);
                 int bufferLen = Ints.checkedCast(Math.max(entry.getCompressedSize(), entry.getSize()));
                 if (bufferLen > config.entryBufferMaxLength) {
                     throw new UnzipException("entry size greater than max buffer length: " + bufferLen);
@@ -186,23 +293,40 @@ public abstract class Unzippage {
                 if (bufferLen <= 0) {
                     bufferLen = config.defaultEntryBufferInitialCapacity;
                 }
-                ByteArrayOutputStream baos = new ByteArrayOutputStream(bufferLen);
                 long inLimit = LongMath.checkedAdd(config.entryBufferMaxLength, 1);
+                ByteSource data;
+                long numCopied;
                 try (InputStream input = ByteStreams.limit(session.openStream(), inLimit)) {
-                    long numCopied = ByteStreams.copy(input, baos);
-                    if (numCopied == inLimit) {
-                        throw new UnzipException("entry size limit breached: " + numCopied);
-                    }
-                    totalUncompressedSize = LongMath.checkedAdd(totalUncompressedSize, numCopied);
-                    if (totalUncompressedSize > config.maxTotalUncompressedSize) {
-                        throw new UnzipException("max total uncompressed size breached: " + totalUncompressedSize);
+                    if (config.isSpillingEnabled()) {
+                        // entries that would exceed the in-memory budget spill to disk
+                        int fileThreshold = Ints.saturatedCast(Math.min(config.inMemoryEntryThreshold, config.maxInMemoryTotalSize - inMemoryTotalSize));
+                        FileBackedOutputStream buffer = new FileBackedOutputStream(fileThreshold, true);
+                        spillBuffers.add(buffer);
+                        try {
+                            numCopied = ByteStreams.copy(input, buffer);
+                        } finally {
+                            buffer.close();
+                        }
+                        if (numCopied <= fileThreshold) {
+                            inMemoryTotalSize += numCopied;
+                        }
+                        data = buffer.asByteSource();
+                    } else {
+                        ByteArrayOutputStream baos = new ByteArrayOutputStream(bufferLen);
+                        numCopied = ByteStreams.copy(input, baos);
+                        data = ByteSource.wrap(baos.toByteArray());
                     }
                 }
-                baos.flush();
-                fileEntries.put(entry.getName(), baos.toByteArray());
+                if (numCopied == inLimit) {
+                    throw new UnzipException("entry size limit breached: " + numCopied);
+                }
+                totalUncompressedSize = LongMath.checkedAdd(totalUncompressedSize, numCopied);
+                if (totalUncompressedSize > config.maxTotalUncompressedSize) {
+                    throw new UnzipException("max total uncompressed size breached: " + totalUncompressedSize);
+                }
+                fileEntries.put(entry.getName(), data);
             }
         }
-        return new CollectionUnzippage(directoryEntries, Maps.transformValues(fileEntries, ByteSource::wrap));
     }
 
     /**
@@ -211,11 +335,142 @@ public abstract class Unzippage {
      * @throws IOException on I/O error
      */
     public void extractTo(Path parent) throws IOException {
+        createDirectorySkeleton(parent);
         for (String fileEntry : fileEntries()) {
-            File file = parent.resolve(fileEntry).toFile();
-            com.google.common.io.Files.createParentDirs(file);
             ByteSource bs = requireNonNull(getFileBytes(fileEntry));
-            bs.copyTo(com.google.common.io.Files.asByteSink(file));
+            try (InputStream in = bs.openStream()) {
+                java.nio.file.Files.copy(in, parent.resolve(fileEntry), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Extracts this unzippage to the given directory, writing files concurrently.
+     * All directories are created first, and then each file is written by a task
+     * on the executor. Tasks are submitted only while the total size of the files
+     * being written is within the given budget, though a file larger than the
+     * budget is written by itself. Files whose size is unknown count as empty.
+     * This method returns when all files have been written or a task has failed;
+     * in the latter case, the exception thrown by the first failed task is rethrown.
+     * @param parent the directory that is to contain the unzipped files
+     * @param executor executor that writes files
+     * @param maxBytesInFlight maximum total size of files being written at once
+     * @throws IOException on I/O error
+     */
+    public void extractTo(Path parent, Executor executor, long maxBytesInFlight) throws IOException {
+        checkArgument(maxBytesInFlight > 0, "budget must be positive");
+        createDirectorySkeleton(parent);
+        ByteBudget budget = new ByteBudget(maxBytesInFlight);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        try {
+            for (String fileEntry : fileEntries()) {
+                ByteSource bs = requireNonNull(getFileBytes(fileEntry));
+                long cost = budget.acquire(bs.sizeIfKnown().or(0L));
+                if (cost < 0) {
+                    break;
+                }
+                Path file = parent.resolve(fileEntry);
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    try (InputStream in = bs.openStream()) {
+                        java.nio.file.Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        budget.release(cost);
+                    }
+                }, executor).whenComplete((ignore, error) -> {
+                    if (error != null) {
+                        budget.fail();
+                    }
+                }));
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while extracting");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            Throwables.throwIfUnchecked(cause);
+            throw new IOException(cause);
+        } finally {
+            tasks.forEach(task -> task.cancel(true));
+        }
+    }
+
+    /**
+     * Creates the directory for each directory entry and the parent directory
+     * of each file entry, visiting each directory once.
+     */
+    private void createDirectorySkeleton(Path parent) throws IOException {
+        Path root = parent.toAbsolutePath().normalize();
+        Set<Path> directories = new LinkedHashSet<>();
+        for (String directoryEntry : directoryEntries()) {
+            directories.add(resolveWithin(root, directoryEntry));
+        }
+        for (String fileEntry : fileEntries()) {
+            directories.add(resolveWithin(root, fileEntry).getParent());
+        }
+        Set<Path> created = new HashSet<>();
+        for (Path directory : directories) {
+            if (!created.contains(directory)) {
+                java.nio.file.Files.createDirectories(directory);
+                // ancestors now exist too
+                Path ancestor = directory;
+                while (ancestor != null && ancestor.startsWith(root) && created.add(ancestor)) {
+                    ancestor = ancestor.getParent();
+                }
+            }
+        }
+    }
+
+    private static Path resolveWithin(Path root, String entryName) throws UnzipException {
+        Path resolved = root.resolve(entryName).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new UnzipException("entry is outside of extraction directory: " + entryName);
+        }
+        return resolved;
+    }
+
+    /**
+     * Budget of bytes that may be in flight at once.
+     */
+    private static class ByteBudget {
+
+        private final long capacity;
+        private long inFlight;
+        private boolean failed;
+
+        public ByteBudget(long capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Waits until the cost fits in the budget, or until nothing else is in flight.
+         * @return the cost to release later, or -1 if a task has failed
+         */
+        public synchronized long acquire(long cost) throws InterruptedException {
+            long actualCost = Math.min(cost, capacity);
+            while (!failed && inFlight + actualCost > capacity) {
+                wait();
+            }
+            if (failed) {
+                return -1;
+            }
+            inFlight += actualCost;
+            return actualCost;
+        }
+
+        public synchronized void release(long cost) {
+            inFlight -= cost;
+            notifyAll();
+        }
+
+        public synchronized void fail() {
+            failed = true;
+            notifyAll();
         }
     }
-}
\ No newline at end of file
+}
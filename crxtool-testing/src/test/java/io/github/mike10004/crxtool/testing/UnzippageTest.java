@@ -3,27 +3,40 @@ package io.github.mike10004.crxtool.testing;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.base.Optional;
 import com.google.common.io.ByteSource;
 import org.junit.Test;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Objects.requireNonNull;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class UnzippageTest {
 
@@ -53,6 +66,123 @@ public class UnzippageTest {
         check(unzippage);
     }
 
+    @Test
+    public void unzip_stream_spillToDisk() throws Exception {
+        UnzipConfig config = UnzipConfig.builder().inMemoryEntryThreshold(1).build();
+        assertTrue("spilling enabled", config.isSpillingEnabled());
+        Unzippage unzippage = Unzippage.unzip(new ByteArrayInputStream(getReferenceZipBytes()), config);
+        try {
+            check(unzippage);
+            // every reference file is larger than the threshold
+            assertEquals("file-backed entries", requiredReferenceFiles.size(), countFileBackedEntries(unzippage));
+        } finally {
+            unzippage.close();
+        }
+        assertEquals("file-backed entries after close", 0, countFileBackedEntries(unzippage));
+    }
+
+    @Test
+    public void unzip_file_inMemoryBudget() throws Exception {
+        File zipFile = File.createTempFile("reference", ".zip");
+        Files.write(zipFile.toPath(), getReferenceZipBytes());
+        UnzipConfig config = UnzipConfig.builder().maxInMemoryTotalSize(4).build();
+        Unzippage unzippage = Unzippage.unzip(zipFile, config, ZipIntegrityConstraint.IGNORE_ERRORS);
+        try {
+            check(unzippage);
+            // reference files are 2 bytes each, so two fit in the budget
+            assertEquals("file-backed entries", requiredReferenceFiles.size() - 2, countFileBackedEntries(unzippage));
+        } finally {
+            unzippage.close();
+        }
+        assertEquals("file-backed entries after close", 0, countFileBackedEntries(unzippage));
+    }
+
+    @Test
+    public void unzipUsingCentralDirectory() throws Exception {
+        File zipFile = File.createTempFile("reference", ".zip");
+        Files.write(zipFile.toPath(), getReferenceZipBytes());
+        check(Unzippage.unzipUsingCentralDirectory(zipFile, UnzipConfig.getDefault()));
+        try (Unzippage unzippage = Unzippage.unzipUsingCentralDirectory(zipFile, UnzipConfig.builder().maxInMemoryTotalSize(4).build())) {
+            check(unzippage);
+            assertEquals("file-backed entries", requiredReferenceFiles.size() - 2, countFileBackedEntries(unzippage));
+        }
+    }
+
+    @Test(expected = Unzippage.UnzipException.class)
+    public void unzipUsingCentralDirectory_compressionRatio() throws Exception {
+        File zipFile = File.createTempFile("bomb", ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            out.putNextEntry(new ZipEntry("zeros"));
+            out.write(new byte[1024 * 1024]);
+            out.closeEntry();
+        }
+        Unzippage.unzipUsingCentralDirectory(zipFile, UnzipConfig.builder().maxCompressionRatio(100).build());
+    }
+
+    @Test
+    public void unzipUsingCentralDirectory_sizesExceedArchive() throws Exception {
+        byte[] data = "0123456789".getBytes(US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(buffer)) {
+            ZipEntry entry = new ZipEntry("stored");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(data);
+            out.closeEntry();
+        }
+        // ratio 1, but far more data than the file holds
+        File zipFile = writeWithDeclaredSizes(buffer.toByteArray(), 0x7FFF0000, 0x7FFF0000);
+        assertUnzipFails(zipFile, "archive length");
+    }
+
+    @Test
+    public void unzipUsingCentralDirectory_sizeTooLargeForDeflate() throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int compressedSize;
+        try (ZipOutputStream out = new ZipOutputStream(buffer)) {
+            out.putNextEntry(new ZipEntry("deflated"));
+            out.write(new byte[1000]);
+            out.closeEntry();
+        }
+        File plainFile = File.createTempFile("deflated", ".zip");
+        Files.write(plainFile.toPath(), buffer.toByteArray());
+        try (java.util.zip.ZipFile zf = new java.util.zip.ZipFile(plainFile)) {
+            compressedSize = (int) zf.getEntry("deflated").getCompressedSize();
+        }
+        File zipFile = writeWithDeclaredSizes(buffer.toByteArray(), compressedSize, 0x7FFF0000);
+        assertUnzipFails(zipFile, "too large for compressed size");
+    }
+
+    /**
+     * Writes a copy of a single-entry zip whose central directory declares different sizes.
+     */
+    private static File writeWithDeclaredSizes(byte[] zipBytes, int compressedSize, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(zipBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < zipBytes.length - 4; i++) {
+            if (buffer.getInt(i) == 0x02014b50) {
+                buffer.putInt(i + 20, compressedSize);
+                buffer.putInt(i + 24, size);
+                File zipFile = File.createTempFile("declared-sizes", ".zip");
+                Files.write(zipFile.toPath(), zipBytes);
+                return zipFile;
+            }
+        }
+        throw new IllegalArgumentException("no central directory header");
+    }
+
+    private static void assertUnzipFails(File zipFile, String expectedMessagePart) throws IOException {
+        try {
+            Unzippage.unzipUsingCentralDirectory(zipFile, UnzipConfig.getDefault());
+            fail("expected exception");
+        } catch (Unzippage.UnzipException e) {
+            assertTrue("message: " + e.getMessage(), e.getMessage().contains(expectedMessagePart));
+        }
+    }
+
     @Test(expected = java.util.zip.ZipException.class)
     public void unzip_file_notZipData() throws Exception {
         byte[] bytes = new byte[10 * 1024];
@@ -92,6 +222,69 @@ public class UnzippageTest {
         assertEquals("file entries", ImmutableSet.of("manifest.json", "background.js"), ImmutableSet.copyOf(unzippage.fileEntries()));
     }
 
+    @Test
+    public void open_lazy() throws Exception {
+        File zipFile = File.createTempFile("reference", ".zip");
+        Files.write(zipFile.toPath(), getReferenceZipBytes());
+        try (LazyUnzippage unzippage = LazyUnzippage.open(zipFile)) {
+            check(unzippage);
+            ByteSource bytes = requireNonNull(unzippage.getFileBytes("ziptest/d1/c"));
+            assertEquals("size", Optional.of(2L), bytes.sizeIfKnown());
+            File extractionDir = java.nio.file.Files.createTempDirectory("extraction").toFile();
+            unzippage.extractTo(extractionDir.toPath());
+            assertArrayEquals("extracted", requiredReferenceFiles.get("ziptest/d1/d2/d3/a"), Files.readAllBytes(extractionDir.toPath().resolve("ziptest/d1/d2/d3/a")));
+        }
+    }
+
+    @Test
+    public void open_lazy_crx() throws Exception {
+        File crxFile = new File(getClass().getResource("/extension.crx").toURI());
+        try (LazyUnzippage unzippage = LazyUnzippage.open(crxFile)) {
+            assertEquals("file entries", ImmutableSet.of("manifest.json", "background.js"), ImmutableSet.copyOf(unzippage.fileEntries()));
+            assertTrue("manifest nonempty", requireNonNull(unzippage.getFileBytes("manifest.json")).read().length > 0);
+        }
+    }
+
+    @Test
+    public void extractTo_parallel() throws Exception {
+        Unzippage unzippage = Unzippage.unzip(new ByteArrayInputStream(getReferenceZipBytes()));
+        File extractionDir = java.nio.file.Files.createTempDirectory("extraction").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            unzippage.extractTo(extractionDir.toPath(), executor, 3);
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Map.Entry<String, byte[]> entry : requiredReferenceFiles.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), Files.readAllBytes(extractionDir.toPath().resolve(entry.getKey())));
+        }
+        for (String dir : requiredReferenceDirs) {
+            assertTrue(dir, extractionDir.toPath().resolve(dir).toFile().isDirectory());
+        }
+    }
+
+    @Test(expected = Unzippage.UnzipException.class)
+    public void extractTo_entryOutsideDirectory() throws Exception {
+        Unzippage unzippage = new Unzippage() {
+            @Override
+            public Iterable<String> fileEntries() {
+                return ImmutableList.of("../escaped");
+            }
+
+            @Override
+            public Iterable<String> directoryEntries() {
+                return ImmutableList.of();
+            }
+
+            @Override
+            public ByteSource getFileBytes(String fileEntry) {
+                return ByteSource.empty();
+            }
+        };
+        File extractionDir = java.nio.file.Files.createTempDirectory("extraction").toFile();
+        unzippage.extractTo(extractionDir.toPath(), ForkJoinPool.commonPool(), 1024);
+    }
+
     private void check(Unzippage unzippage) throws IOException {
         System.out.format("directories: %s%n", ImmutableList.copyOf(unzippage.directoryEntries()));
         System.out.format("files: %s%n", ImmutableList.copyOf(unzippage.fileEntries()));
@@ -108,6 +301,18 @@ public class UnzippageTest {
         });
     }
 
+    private static int countFileBackedEntries(Unzippage unzippage) throws IOException {
+        int count = 0;
+        for (String entryName : unzippage.fileEntries()) {
+            try (InputStream in = requireNonNull(unzippage.getFileBytes(entryName)).openStream()) {
+                if (in instanceof FileInputStream) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     private static byte[] getReferenceZipBytes() {
         return Base64.getDecoder().decode(REFERENCE_ZIP_BASE64);
     }